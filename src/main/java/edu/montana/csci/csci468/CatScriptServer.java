@@ -1,6 +1,8 @@
 package edu.montana.csci.csci468;
 
 import edu.montana.csci.csci468.bytecode.ByteCodeGenerator;
+import edu.montana.csci.csci468.bytecode.CompileService;
+import edu.montana.csci.csci468.bytecode.CompiledProgramCache;
 import edu.montana.csci.csci468.js.JSTranspiler;
 import edu.montana.csci.csci468.parser.CatScriptParser;
 import edu.montana.csci.csci468.parser.ParseError;
@@ -23,6 +25,12 @@ import java.util.stream.Collectors;
 import static spark.Spark.*;
 
 class CatScriptServer {
+
+    private static final CompiledProgramCache COMPILED_PROGRAMS = new CompiledProgramCache(256);
+    // scripts are interpreted until their class is compiled in the background
+    private static final CompileService COMPILE_SERVICE = new CompileService(COMPILED_PROGRAMS,
+            Math.max(1, Runtime.getRuntime().availableProcessors() / 2), 64);
+
     public static void main(String[] args) {
         port(6789);
         Spark.staticFiles.location("/public");
@@ -91,11 +99,8 @@ class CatScriptServer {
 
         get("/compile", (req, resp) -> {
             String source = req.queryParams("src");
-            CatScriptProgram program = new CatScriptParser().parse(source);
             try {
-                program.verify();
-                ByteCodeGenerator byteCodeGenerator = new ByteCodeGenerator(program);
-                CatScriptProgram compiledProgram = byteCodeGenerator.compileToBytecode();
+                CatScriptProgram compiledProgram = COMPILE_SERVICE.getProgram(source);
                 compiledProgram.execute();
                 return compiledProgram.getOutput();
             } catch (ParseErrorException parseErrorException) {
@@ -104,5 +109,10 @@ class CatScriptServer {
             }
         });
 
+        get("/stats", (req, resp) -> "<pre>" + COMPILED_PROGRAMS +
+                "\n" + COMPILE_SERVICE +
+                "\nlive program classes: " + ByteCodeGenerator.getLiveProgramClassCount() +
+                "\ncompiled program classes: " + ByteCodeGenerator.getCompiledProgramClassCount() + "</pre>");
+
     }
 }
\ No newline at end of file
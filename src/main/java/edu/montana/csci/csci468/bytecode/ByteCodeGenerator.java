@@ -1,12 +1,14 @@
 package edu.montana.csci.csci468.bytecode;
 
+import edu.montana.csci.csci468.parser.CatscriptType;
 import edu.montana.csci.csci468.parser.statements.CatScriptProgram;
+import edu.montana.csci.csci468.parser.statements.FunctionDefinitionStatement;
 import org.objectweb.asm.*;
-import org.objectweb.asm.util.CheckClassAdapter;
-import org.objectweb.asm.util.TraceClassVisitor;
 
-import java.io.PrintWriter;
-import java.io.StringWriter;
+import java.lang.ref.Cleaner;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Stack;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -14,7 +16,17 @@ import java.util.concurrent.atomic.AtomicInteger;
 public class ByteCodeGenerator {
 
     private static final AtomicInteger classInteger = new AtomicInteger();
-    private static final DynamicClassLoader CLASS_LOADER = new DynamicClassLoader();
+
+    // every program class gets its own loader, so it can be unloaded once nothing
+    // references it; the cleaner keeps count of the loaders still alive
+    private static final Cleaner LOADER_CLEANER = Cleaner.create();
+    private static final AtomicInteger liveProgramClasses = new AtomicInteger();
+
+    private static volatile BytecodeDiagnostics diagnostics = BytecodeDiagnostics.fromSystemProperties();
+
+    // HotSpot won't JIT methods over 8000 bytes of bytecode, top-level code moves to a new
+    // method once the current one passes this many bytes, see splitMethodIfLong
+    public static final int DEFAULT_METHOD_SPLIT_THRESHOLD = 4000;
 
     private ClassWriter classWriter;
     private MethodGenerator currentMethod;
@@ -23,31 +35,221 @@ public class ByteCodeGenerator {
     private final CatScriptProgram program;
     private String internalClassName;
     private String dotClassName;
+    // prepended to the names of globals and functions, so the scripts of a batch can share a class
+    private String memberPrefix = "";
+    private int methodSplitThreshold = DEFAULT_METHOD_SPLIT_THRESHOLD;
+    // execute(), which calls the split off parts of the program in order
+    private MethodGenerator executeMethod;
+    private int splitCount;
+    // batch classes only: scripts compiled so far, and each global of the current script's
+    // index into the int or the object array
+    private int batchSize;
+    private Map<String, Integer> batchGlobals;
+    private int intGlobals;
+    private int objectGlobals;
 
     public ByteCodeGenerator(CatScriptProgram program) {
         this.program = program;
     }
 
     public CatScriptProgram compileToBytecode() {
-        methodStack = new Stack<>();
-        classWriter = new ClassWriter(ClassWriter.COMPUTE_MAXS | ClassWriter.COMPUTE_FRAMES);
-        internalClassName = "edu/montana/csci/csci466/bytecode/CatScriptProgram" + classInteger.incrementAndGet();
-        dotClassName = internalClassName.replace('/', '.');
-        makeClass(internalClassName);
+        return newInstance(compileToClass());
+    }
+
+    public Class<? extends CatScriptProgram> compileToClass() {
+        byte[] classBytes = compileToClassFile(nextClassName());
+        return loadClass(dotClassName, classBytes);
+    }
+
+    // the class file for the program under the given (dotted) class name, to be written out
+    // and loaded again later, see CompiledProgramWriter
+    public byte[] compileToClassFile(String className) {
+        startClass(className);
         makeConstructor();
+        compileProgram(program, Opcodes.ACC_PUBLIC, "execute");
+        return finishClass();
+    }
+
+    // One class holding every program as a private method, with execute() switching on the
+    // script index passed to the constructor (see ScriptBatch).  The scripts share the class's
+    // constant pool and each one's functions get a prefix of their own.  Globals live in arrays
+    // allocated when a script starts, so an instance only carries those of its own script.
+    public static Class<? extends CatScriptProgram> compileBatchToClass(List<CatScriptProgram> programs) {
+        if (programs.isEmpty()) {
+            throw new IllegalArgumentException("A batch needs at least one program");
+        }
+        ByteCodeGenerator code = startBatch();
+        for (CatScriptProgram program : programs) {
+            code.addToBatch(program);
+        }
+        return code.finishBatch();
+    }
+
+    static ByteCodeGenerator startBatch() {
+        ByteCodeGenerator code = new ByteCodeGenerator(null);
+        code.startClass(nextClassName());
+        code.makeBatchConstructor();
+        return code;
+    }
+
+    void addToBatch(CatScriptProgram program) {
+        memberPrefix = "script" + batchSize + "$";
+        batchGlobals = new HashMap<>();
+        intGlobals = 0;
+        objectGlobals = 0;
+        compileProgram(program, Opcodes.ACC_PRIVATE, memberNameFor("execute"));
+        try (MethodGenerator globals = makeMethod(Opcodes.ACC_PRIVATE, memberNameFor("globals"), "()V")) {
+            globals.addVarInstruction(Opcodes.ALOAD, 0);
+            globals.pushConstantOntoStack(intGlobals);
+            globals.addIntInstruction(Opcodes.NEWARRAY, Opcodes.T_INT);
+            globals.addFieldInstruction(Opcodes.PUTFIELD, internalClassName, BATCH_INT_GLOBALS_FIELD, "[I");
+            globals.addVarInstruction(Opcodes.ALOAD, 0);
+            globals.pushConstantOntoStack(objectGlobals);
+            globals.addTypeInstruction(Opcodes.ANEWARRAY, "java/lang/Object");
+            globals.addFieldInstruction(Opcodes.PUTFIELD, internalClassName, BATCH_OBJECT_GLOBALS_FIELD, "[Ljava/lang/Object;");
+            globals.addInstruction(Opcodes.RETURN);
+        }
+        batchSize++;
+    }
+
+    // About how many constants the batch class holds so far: the index the name of the next
+    // script's execute method gets (that one extra entry is all it costs if none follows).
+    int getConstantPoolSize() {
+        return classWriter.newUTF8("script" + batchSize + "$execute");
+    }
+
+    Class<? extends CatScriptProgram> finishBatch() {
+        Label[] scriptLabels = new Label[batchSize];
+        Label end = new Label();
+        try (MethodGenerator execute = makeMethod(Opcodes.ACC_PUBLIC, "execute", "()V")) {
+            execute.addVarInstruction(Opcodes.ALOAD, 0);
+            execute.addFieldInstruction(Opcodes.GETFIELD, internalClassName, BATCH_SCRIPT_FIELD, "I");
+            for (int i = 0; i < batchSize; i++) {
+                scriptLabels[i] = new Label();
+            }
+            execute.addTableSwitchInstruction(0, batchSize - 1, end, scriptLabels);
+            for (int i = 0; i < batchSize; i++) {
+                execute.addLabel(scriptLabels[i]);
+                execute.addVarInstruction(Opcodes.ALOAD, 0);
+                execute.addMethodInstruction(Opcodes.INVOKESPECIAL, internalClassName, "script" + i + "$execute", "()V");
+                execute.addInstruction(Opcodes.RETURN);
+            }
+            execute.addLabel(end);
+            execute.addInstruction(Opcodes.RETURN);
+        }
+        return loadClass(dotClassName, finishClass());
+    }
 
-        currentMethod = makeMethod(Opcodes.ACC_PUBLIC, "execute", "()V");
+    private void compileProgram(CatScriptProgram program, int access, String name) {
+        program.optimize();
+        executeMethod = currentMethod = makeMethod(access, name, "()V");
+        splitCount = 0;
+        if (batchGlobals != null) {
+            executeMethod.addVarInstruction(Opcodes.ALOAD, 0);
+            executeMethod.addMethodInstruction(Opcodes.INVOKESPECIAL, internalClassName, memberNameFor("globals"), "()V");
+        }
         program.compile(this);
         currentMethod.close();
+        if (currentMethod != executeMethod) {
+            executeMethod.addInstruction(Opcodes.RETURN);
+            executeMethod.close();
+        }
+    }
+
+    // a program class holding only the given function as a method, see CompiledFunction
+    public Class<? extends CatScriptProgram> compileFunctionToClass(FunctionDefinitionStatement function) {
+        startClass(nextClassName());
+        makeConstructor();
+        function.compile(this);
+        return loadClass(dotClassName, finishClass());
+    }
+
+    public void setMethodSplitThreshold(int methodSplitThreshold) {
+        this.methodSplitThreshold = methodSplitThreshold;
+    }
+
+    // Called between top-level statements.  Those only share state through fields (globals)
+    // and scoped locals, so the rest of the program can continue in a fresh private method,
+    // which execute() calls after the previous part returns.
+    public void splitMethodIfLong() {
+        if (currentMethod.getCodeSize() < methodSplitThreshold) {
+            return;
+        }
+        if (currentMethod != executeMethod) {
+            currentMethod.addInstruction(Opcodes.RETURN);
+            currentMethod.close();
+        }
+        String name = memberNameFor("execute$" + (++splitCount));
+        executeMethod.addVarInstruction(Opcodes.ALOAD, 0);
+        executeMethod.addMethodInstruction(Opcodes.INVOKESPECIAL, internalClassName, name, "()V");
+        currentMethod = makeMethod(Opcodes.ACC_PRIVATE, name, "()V");
+    }
+
+    private static String nextClassName() {
+        return "edu.montana.csci.csci466.bytecode.CatScriptProgram" + classInteger.incrementAndGet();
+    }
 
+    private void startClass(String className) {
+        methodStack = new Stack<>();
+        classWriter = new ClassWriter(ClassWriter.COMPUTE_MAXS | ClassWriter.COMPUTE_FRAMES);
+        dotClassName = className;
+        internalClassName = className.replace('.', '/');
+        makeClass(internalClassName);
+    }
+
+    private byte[] finishClass() {
         classWriter.visitEnd();
-        byte[] classBytes = classWriter.toByteArray();
-        printClassASM(classBytes);
-        return loadClass(dotClassName, classBytes);
+        byte[] classBytes;
+        try {
+            classBytes = classWriter.toByteArray();
+        } catch (MethodTooLargeException e) {
+            throw new IllegalStateException(tooLargeMessage(e), e);
+        }
+        diagnostics.classCompiled(dotClassName, classBytes);
+        return classBytes;
+    }
+
+    // Top-level code is only split between statements (see splitMethodIfLong), function
+    // bodies and the bodies of loops and ifs never are, so one of those can still outgrow a
+    // method.  Says which in CatScript terms rather than in those of the generated class.
+    private static String tooLargeMessage(MethodTooLargeException e) {
+        String method = e.getMethodName().replaceFirst("^script\\d+\\$", "");
+        String what = method.startsWith("execute") ? "A top-level statement" : "Function " + method;
+        return what + " is too long to compile: it needs " + e.getCodeSize() + " bytes of bytecode" +
+                " and a JVM method holds at most 65535.  Only top-level code is split between" +
+                " statements, move parts of long function, loop or if bodies into functions of their own";
+    }
+
+    // the field holding the script a batch program instance runs, and the arrays holding
+    // that script's globals (ints and bools in one, everything else in the other)
+    private static final String BATCH_SCRIPT_FIELD = "script$";
+    private static final String BATCH_INT_GLOBALS_FIELD = "ints$";
+    private static final String BATCH_OBJECT_GLOBALS_FIELD = "objects$";
+
+    private void makeBatchConstructor() {
+        addField(BATCH_SCRIPT_FIELD, "I");
+        addField(BATCH_INT_GLOBALS_FIELD, "[I");
+        addField(BATCH_OBJECT_GLOBALS_FIELD, "[Ljava/lang/Object;");
+        try (MethodGenerator constructor = makeMethod(Opcodes.ACC_PUBLIC, "<init>", "(I)V")) {
+            constructor.addVarInstruction(Opcodes.ALOAD, 0);
+            constructor.addMethodInstruction(Opcodes.INVOKESPECIAL, internalNameFor(CatScriptProgram.class), "<init>", "()V");
+            constructor.addVarInstruction(Opcodes.ALOAD, 0);
+            constructor.addVarInstruction(Opcodes.ILOAD, 1);
+            constructor.addFieldInstruction(Opcodes.PUTFIELD, internalClassName, BATCH_SCRIPT_FIELD, "I");
+            constructor.addInstruction(Opcodes.RETURN);
+        }
+    }
+
+    public static CatScriptProgram newInstance(Class<? extends CatScriptProgram> programClass) {
+        try {
+            return programClass.getConstructor().newInstance();
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
     }
 
     private void makeClass(String className) {
-        classWriter.visit(Opcodes.V1_5, Opcodes.ACC_PUBLIC,
+        classWriter.visit(Opcodes.V11, Opcodes.ACC_PUBLIC,
                 className, null, internalNameFor(CatScriptProgram.class) , null);
     }
 
@@ -64,6 +266,20 @@ public class ByteCodeGenerator {
         return name.replace(".", "/");
     }
 
+    // ints and bools are JVM primitives wherever they are stored or passed, they are only boxed
+    // when they cross into an object or list
+    public static String descriptorFor(CatscriptType type) {
+        if (type == CatscriptType.INT) {
+            return "I";
+        } else if (type == CatscriptType.BOOLEAN) {
+            return "Z";
+        } else if (type == CatscriptType.VOID) {
+            return "V";
+        } else {
+            return "L" + internalNameFor(type.getJavaType()) + ";";
+        }
+    }
+
     public void pushMethod(int access, String name, String descriptor) {
         methodStack.push(currentMethod);
         currentMethod = makeMethod(access, name, descriptor);
@@ -80,32 +296,47 @@ public class ByteCodeGenerator {
         return new MethodGenerator(method);
     }
 
-    private void printClassASM(byte[] classBytes) {
-        StringWriter writer = new StringWriter();
-        var visitor = new TraceClassVisitor(new PrintWriter(writer));
-        CheckClassAdapter checkAdapter = new CheckClassAdapter(visitor);
-        ClassReader reader = new ClassReader(classBytes);
-        reader.accept(checkAdapter, 0);
-        String decompiledTransformedClass = writer.getBuffer().toString();
-        System.out.println(" JVM Bytecode ===================================\n");
-        System.out.println(decompiledTransformedClass);
-        System.out.println("\n ================================================");
+    public static BytecodeDiagnostics getDiagnostics() {
+        return diagnostics;
     }
 
-    private CatScriptProgram loadClass(String dotClassName, byte[] classBytes) {
-        try {
-            CLASS_LOADER.defineClass(dotClassName, classBytes);
-            Class<?> clazz = CLASS_LOADER.loadClass(dotClassName);
-            return (CatScriptProgram) clazz.getConstructor().newInstance();
-        } catch (Exception e) {
-            throw new RuntimeException(e);
-        }
+    public static void setDiagnostics(BytecodeDiagnostics diagnostics) {
+        ByteCodeGenerator.diagnostics = diagnostics;
+    }
+
+    private Class<? extends CatScriptProgram> loadClass(String dotClassName, byte[] classBytes) {
+        DynamicClassLoader classLoader = new DynamicClassLoader();
+        Class<?> clazz = classLoader.defineClass(dotClassName, classBytes);
+        liveProgramClasses.incrementAndGet();
+        LOADER_CLEANER.register(classLoader, liveProgramClasses::decrementAndGet);
+        return clazz.asSubclass(CatScriptProgram.class);
+    }
+
+    public static int getLiveProgramClassCount() {
+        return liveProgramClasses.get();
+    }
+
+    public static int getCompiledProgramClassCount() {
+        return classInteger.get();
     }
 
     public Integer nextLocalStorageSlot() {
         return currentMethod.nextLocalStorageSlot();
     }
 
+    public Integer nextLocalStorageSlot(int width) {
+        return currentMethod.nextLocalStorageSlot(width);
+    }
+
+    // slots allocated inside a scope are free for reuse once it is popped
+    public void pushScope() {
+        currentMethod.pushScope();
+    }
+
+    public void popScope() {
+        currentMethod.popScope();
+    }
+
     public Integer createLocalStorageSlotFor(String name){
         return currentMethod.createLocalStorageSlotFor(name);
     }
@@ -114,13 +345,71 @@ public class ByteCodeGenerator {
         return currentMethod.resolveLocalStorageSlotFor(name);
     }
 
+    public String memberNameFor(String name) {
+        return memberPrefix + name;
+    }
+
+    // Globals are fields of the program class, or in a batch class slots of the current
+    // script's arrays.  A store is split around the value: startGlobalStore pushes what goes
+    // before it, finishGlobalStore stores it.
+    public void loadGlobal(String name, String descriptor) {
+        addVarInstruction(Opcodes.ALOAD, 0);
+        if (batchGlobals == null) {
+            addFieldInstruction(Opcodes.GETFIELD, memberNameFor(name), descriptor, internalClassName);
+        } else if (isPrimitive(descriptor)) {
+            loadBatchGlobals(name, true);
+            addInstruction(Opcodes.IALOAD);
+        } else {
+            loadBatchGlobals(name, false);
+            addInstruction(Opcodes.AALOAD);
+            if (!descriptor.equals("Ljava/lang/Object;")) {
+                addTypeInstruction(Opcodes.CHECKCAST, descriptor.substring(1, descriptor.length() - 1));
+            }
+        }
+    }
+
+    public void startGlobalStore(String name, String descriptor) {
+        addVarInstruction(Opcodes.ALOAD, 0);
+        if (batchGlobals == null) {
+            addField(memberNameFor(name), descriptor);
+        } else {
+            loadBatchGlobals(name, isPrimitive(descriptor));
+        }
+    }
+
+    public void finishGlobalStore(String name, String descriptor) {
+        if (batchGlobals == null) {
+            addFieldInstruction(Opcodes.PUTFIELD, memberNameFor(name), descriptor, internalClassName);
+        } else {
+            addInstruction(isPrimitive(descriptor) ? Opcodes.IASTORE : Opcodes.AASTORE);
+        }
+    }
+
+    // pushes the array holding a global and its index in there, with this already on the stack
+    private void loadBatchGlobals(String name, boolean primitive) {
+        int slot = batchGlobals.computeIfAbsent(name, n -> primitive ? intGlobals++ : objectGlobals++);
+        if (primitive) {
+            addFieldInstruction(Opcodes.GETFIELD, BATCH_INT_GLOBALS_FIELD, "[I", internalClassName);
+        } else {
+            addFieldInstruction(Opcodes.GETFIELD, BATCH_OBJECT_GLOBALS_FIELD, "[Ljava/lang/Object;", internalClassName);
+        }
+        pushConstantOntoStack(slot);
+    }
+
+    private static boolean isPrimitive(String descriptor) {
+        return descriptor.equals("I") || descriptor.equals("Z");
+    }
+
     public String getProgramInternalName() {
         return internalClassName;
     }
 
     static class DynamicClassLoader extends ClassLoader {
-        public void defineClass(String name, byte[] bytes) {
-            defineClass(name, bytes, 0, bytes.length);
+        DynamicClassLoader() {
+            super(ByteCodeGenerator.class.getClassLoader());
+        }
+        public Class<?> defineClass(String name, byte[] bytes) {
+            return defineClass(name, bytes, 0, bytes.length);
         }
         @Override
         public Class<?> findClass(String name) throws ClassNotFoundException {
@@ -152,6 +441,14 @@ public class ByteCodeGenerator {
         currentMethod.addMethodInstruction(opcode, owner, name, descriptor);
     }
 
+    public void addInvokeDynamicInstruction(String name, String descriptor, Handle bootstrapMethod, Object... bootstrapArguments) {
+        currentMethod.addInvokeDynamicInstruction(name, descriptor, bootstrapMethod, bootstrapArguments);
+    }
+
+    public void addIncrementInstruction(int var, int increment) {
+        currentMethod.addIncrementInstruction(var, increment);
+    }
+
     public void addJumpInstruction(int opcode, Label label) {
         currentMethod.addJumpInstruction(opcode, label);
     }
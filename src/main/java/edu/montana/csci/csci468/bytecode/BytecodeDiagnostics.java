@@ -0,0 +1,130 @@
+package edu.montana.csci.csci468.bytecode;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.util.CheckClassAdapter;
+import org.objectweb.asm.util.TraceClassVisitor;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Where (if anywhere) the verified disassembly of generated classes goes.  Off by default;
+// can be set from code via ByteCodeGenerator.setDiagnostics or with system properties:
+//
+//   -Dcatscript.bytecode.dump=stdout|<directory>   -Dcatscript.bytecode.dump.every=<n>
+public class BytecodeDiagnostics {
+
+    public enum Mode { OFF, STDOUT, FILE }
+
+    private static final BytecodeDiagnostics OFF = new BytecodeDiagnostics(Mode.OFF, null, 1);
+
+    private final Mode mode;
+    private final Path directory;
+    private final int sampleEvery;
+    private final AtomicLong compiles = new AtomicLong();
+    private final AtomicLong failedFunctionCompiles = new AtomicLong();
+
+    private BytecodeDiagnostics(Mode mode, Path directory, int sampleEvery) {
+        if (sampleEvery < 1) {
+            throw new IllegalArgumentException("sampleEvery must be at least 1, was " + sampleEvery);
+        }
+        this.mode = mode;
+        this.directory = directory;
+        this.sampleEvery = sampleEvery;
+    }
+
+    public static BytecodeDiagnostics off() {
+        return OFF;
+    }
+
+    public static BytecodeDiagnostics toStandardOut() {
+        return new BytecodeDiagnostics(Mode.STDOUT, null, 1);
+    }
+
+    public static BytecodeDiagnostics toDirectory(Path directory) {
+        return new BytecodeDiagnostics(Mode.FILE, directory, 1);
+    }
+
+    // only dump every nth compiled class
+    public BytecodeDiagnostics sampleEvery(int n) {
+        return new BytecodeDiagnostics(mode, directory, n);
+    }
+
+    public static BytecodeDiagnostics fromSystemProperties() {
+        String target = System.getProperty("catscript.bytecode.dump", "off");
+        int every = Integer.getInteger("catscript.bytecode.dump.every", 1);
+        if (target.equalsIgnoreCase("off")) {
+            return off();
+        } else if (target.equalsIgnoreCase("stdout")) {
+            return toStandardOut().sampleEvery(every);
+        } else {
+            return toDirectory(Paths.get(target)).sampleEvery(every);
+        }
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public boolean isEnabled() {
+        return mode != Mode.OFF;
+    }
+
+    void classCompiled(String dotClassName, byte[] classBytes) {
+        if (mode == Mode.OFF || compiles.getAndIncrement() % sampleEvery != 0) {
+            return;
+        }
+        String listing = disassemble(classBytes);
+        if (mode == Mode.STDOUT) {
+            System.out.println(" JVM Bytecode ===================================\n");
+            System.out.println(listing);
+            System.out.println("\n ================================================");
+        } else {
+            try {
+                Files.createDirectories(directory);
+                Files.writeString(directory.resolve(dotClassName + ".txt"), listing);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    // A hot function the generator could not compile, see CompiledFunction.  It keeps running
+    // in the interpreter; failures are always counted, and reported when dumping is on.
+    void functionCompileFailed(String functionName, Throwable cause) {
+        failedFunctionCompiles.incrementAndGet();
+        if (mode == Mode.OFF) {
+            return;
+        }
+        StringWriter report = new StringWriter();
+        report.append("Could not compile function ").append(functionName).append(", it stays interpreted\n");
+        cause.printStackTrace(new PrintWriter(report));
+        if (mode == Mode.STDOUT) {
+            System.out.println(report);
+        } else {
+            try {
+                Files.createDirectories(directory);
+                Files.writeString(directory.resolve(functionName + ".failed.txt"), report.toString());
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    public long getFailedFunctionCompiles() {
+        return failedFunctionCompiles.get();
+    }
+
+    private static String disassemble(byte[] classBytes) {
+        StringWriter writer = new StringWriter();
+        var visitor = new TraceClassVisitor(new PrintWriter(writer));
+        CheckClassAdapter checkAdapter = new CheckClassAdapter(visitor);
+        ClassReader reader = new ClassReader(classBytes);
+        reader.accept(checkAdapter, 0);
+        return writer.getBuffer().toString();
+    }
+}
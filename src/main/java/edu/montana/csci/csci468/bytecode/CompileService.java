@@ -0,0 +1,131 @@
+package edu.montana.csci.csci468.bytecode;
+
+import edu.montana.csci.csci468.parser.CatScriptParser;
+import edu.montana.csci.csci468.parser.statements.CatScriptProgram;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Compiles scripts to program classes off the caller's thread.  The executor is bounded in
+// both threads and queued work; when it is full, compile requests fail right away with a
+// RejectedExecutionException rather than piling up.  Concurrent requests for the same source
+// share one compile, and finished classes go into the CompiledProgramCache.
+//
+// getProgram never waits: until a script's class is ready it hands out an interpreted program
+// (and starts the compile), afterwards a fresh compiled instance.
+public class CompileService implements AutoCloseable {
+
+    private final CompiledProgramCache cache;
+    private final ExecutorService executor;
+    private final ConcurrentHashMap<String, CompletableFuture<Class<? extends CatScriptProgram>>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong interpreted = new AtomicLong();
+
+    public CompileService(CompiledProgramCache cache, int threads, int queueCapacity) {
+        this(cache, new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new CompilerThreadFactory()));
+    }
+
+    CompileService(CompiledProgramCache cache, ExecutorService executor) {
+        this.cache = cache;
+        this.executor = executor;
+    }
+
+    // parse errors complete the future exceptionally with a ParseErrorException
+    public CompletableFuture<Class<? extends CatScriptProgram>> compileClass(String source) {
+        Class<? extends CatScriptProgram> programClass = cache.peekProgramClass(source);
+        if (programClass != null) {
+            return CompletableFuture.completedFuture(programClass);
+        }
+        String key = CompiledProgramCache.hash(source);
+        CompletableFuture<Class<? extends CatScriptProgram>> compile = inFlight.get(key);
+        if (compile != null) {
+            return compile;
+        }
+        CompletableFuture<Class<? extends CatScriptProgram>> created = new CompletableFuture<>();
+        compile = inFlight.putIfAbsent(key, created);
+        if (compile != null) {
+            return compile;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    created.complete(cache.getProgramClass(source));
+                } catch (Throwable t) {
+                    created.completeExceptionally(t);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            created.completeExceptionally(e);
+        }
+        // once done the class is in the cache (or the source failed), either way stop sharing
+        created.whenComplete((c, t) -> inFlight.remove(key, created));
+        return created;
+    }
+
+    public CompletableFuture<CatScriptProgram> compile(String source) {
+        return compileClass(source).thenApply(ByteCodeGenerator::newInstance);
+    }
+
+    // a program ready to execute: compiled if the class is ready, otherwise parsed and
+    // verified for the interpreter (throwing any ParseErrorException) while the compile runs.
+    // The compile is only started once the script verifies, so scripts with errors never
+    // take up the bounded queue however often they are requested.
+    public CatScriptProgram getProgram(String source) {
+        Class<? extends CatScriptProgram> programClass = cache.peekProgramClass(source);
+        if (programClass != null) {
+            return ByteCodeGenerator.newInstance(programClass);
+        }
+        CatScriptProgram program = new CatScriptParser().parse(source);
+        program.verify();
+        interpreted.incrementAndGet();
+        compileClass(source);
+        return program;
+    }
+
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    public long getInterpretedCount() {
+        return interpreted.get();
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    @Override
+    public String toString() {
+        return "CompileService{" +
+                "inFlight=" + getInFlightCount() +
+                ", rejected=" + getRejectedCount() +
+                ", interpreted=" + getInterpretedCount() +
+                '}';
+    }
+
+    private static class CompilerThreadFactory implements ThreadFactory {
+        private static final AtomicInteger threadCount = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "catscript-compiler-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
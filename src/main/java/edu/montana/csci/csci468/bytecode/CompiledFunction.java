@@ -0,0 +1,88 @@
+package edu.montana.csci.csci468.bytecode;
+
+import edu.montana.csci.csci468.parser.ParseElement;
+import edu.montana.csci.csci468.parser.expressions.FunctionCallExpression;
+import edu.montana.csci.csci468.parser.expressions.IdentifierExpression;
+import edu.montana.csci.csci468.parser.statements.AssignmentStatement;
+import edu.montana.csci.csci468.parser.statements.CatScriptProgram;
+import edu.montana.csci.csci468.parser.statements.FunctionDefinitionStatement;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Arrays;
+
+// A single function compiled to a JVM method, called in place of the tree-walker once the
+// function gets hot (see FunctionDefinitionStatement.invoke).  The method lives on its own
+// program class, so only functions that keep to their own frame can be compiled: no globals
+// (those are fields of the compiled program, not slots of the interpreter's global frame)
+// and no calls to functions other than itself.
+public class CompiledFunction {
+
+    private final MethodHandle method;
+    private final int parameterCount;
+
+    private CompiledFunction(MethodHandle method, int parameterCount) {
+        this.method = method;
+        this.parameterCount = parameterCount;
+    }
+
+    // returns null if the function can't be compiled, the caller keeps interpreting it
+    public static CompiledFunction compile(FunctionDefinitionStatement function) {
+        if (!isCompilable(function, function)) {
+            return null;
+        }
+        try {
+            Class<? extends CatScriptProgram> programClass =
+                    new ByteCodeGenerator(function.getProgram()).compileFunctionToClass(function);
+            CatScriptProgram instance = ByteCodeGenerator.newInstance(programClass);
+            instance.printFor(function);
+            MethodType type = MethodType.fromMethodDescriptorString(function.getDescriptor(), programClass.getClassLoader());
+            MethodHandle method = MethodHandles.publicLookup().findVirtual(programClass, function.getName(), type)
+                    .bindTo(instance);
+            return new CompiledFunction(adapt(method, function), function.getParameterCount());
+        } catch (RuntimeException | LinkageError | ReflectiveOperationException e) {
+            // a construct the bytecode generator doesn't handle (yet), stay in the interpreter
+            ByteCodeGenerator.getDiagnostics().functionCompileFailed(function.getName(), e);
+            return null;
+        }
+    }
+
+    private static boolean isCompilable(ParseElement element, FunctionDefinitionStatement function) {
+        if (element instanceof IdentifierExpression && ((IdentifierExpression) element).getDepth() != 0) {
+            return false;
+        }
+        if (element instanceof AssignmentStatement && ((AssignmentStatement) element).getDepth() != 0) {
+            return false;
+        }
+        if (element instanceof FunctionCallExpression && ((FunctionCallExpression) element).getFunction() != function) {
+            return false;
+        }
+        for (ParseElement child : element.getChildren()) {
+            if (!isCompilable(child, function)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // ints and bools are unboxed on the way in and boxed on the way out by asType
+    private static MethodHandle adapt(MethodHandle method, FunctionDefinitionStatement function) {
+        method = method.asType(method.type().generic());
+        return method.asSpreader(Object[].class, function.getParameterCount());
+    }
+
+    // the arguments are the first slots of an interpreter frame
+    public Object invoke(Object[] frame) {
+        if (frame.length != parameterCount) {
+            frame = Arrays.copyOf(frame, parameterCount);
+        }
+        try {
+            return method.invoke(frame);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new RuntimeException(t);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package edu.montana.csci.csci468.bytecode;
+
+import edu.montana.csci.csci468.parser.CatScriptParser;
+import edu.montana.csci.csci468.parser.statements.CatScriptProgram;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Bounded LRU cache from the SHA-256 of a script's source to its compiled program class.
+// Only the class is cached, never an instance, so every request still gets fresh globals
+// and output. The cache holds the only long-lived reference to a cached class; once an
+// entry is evicted the class can be unloaded along with its class loader.
+public class CompiledProgramCache {
+
+    private final int capacity;
+    private final Map<String, Class<? extends CatScriptProgram>> programs;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public CompiledProgramCache(int capacity) {
+        this.capacity = capacity;
+        this.programs = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Class<? extends CatScriptProgram>> eldest) {
+                if (size() > CompiledProgramCache.this.capacity) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    // parse errors are thrown as ParseErrorExceptions and are not cached
+    public CatScriptProgram instantiate(String source) {
+        return ByteCodeGenerator.newInstance(getProgramClass(source));
+    }
+
+    public Class<? extends CatScriptProgram> getProgramClass(String source) {
+        String key = hash(source);
+        Class<? extends CatScriptProgram> programClass;
+        synchronized (programs) {
+            programClass = programs.get(key);
+        }
+        if (programClass != null) {
+            hits.incrementAndGet();
+            return programClass;
+        }
+        misses.incrementAndGet();
+
+        // compile outside the lock, a concurrent miss on the same source just compiles twice
+        CatScriptProgram program = new CatScriptParser().parse(source);
+        program.verify();
+        programClass = new ByteCodeGenerator(program).compileToClass();
+        synchronized (programs) {
+            programs.put(key, programClass);
+        }
+        return programClass;
+    }
+
+    // the cached class, or null without compiling; does not count as a hit or miss
+    public Class<? extends CatScriptProgram> peekProgramClass(String source) {
+        String key = hash(source);
+        synchronized (programs) {
+            return programs.get(key);
+        }
+    }
+
+    public static String hash(String source) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] bytes = digest.digest(source.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder(bytes.length * 2);
+            for (byte b : bytes) {
+                sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+                sb.append(Character.forDigit(b & 0xF, 16));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public int size() {
+        synchronized (programs) {
+            return programs.size();
+        }
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    @Override
+    public String toString() {
+        return "CompiledProgramCache{" +
+                "size=" + size() +
+                ", capacity=" + capacity +
+                ", hits=" + getHits() +
+                ", misses=" + getMisses() +
+                ", evictions=" + getEvictions() +
+                '}';
+    }
+}
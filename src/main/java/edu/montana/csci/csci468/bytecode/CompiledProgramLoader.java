@@ -0,0 +1,71 @@
+package edu.montana.csci.csci468.bytecode;
+
+import edu.montana.csci.csci468.parser.statements.CatScriptProgram;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+
+// Loads the class files written by CompiledProgramWriter, from a directory or a jar.  The
+// script's source only picks the class, it isn't tokenized, parsed or compiled again.
+// Classes written by a compiler with another format version are treated as missing.
+public class CompiledProgramLoader implements AutoCloseable {
+
+    private final URLClassLoader classLoader;
+    private final boolean currentFormat;
+
+    public CompiledProgramLoader(Path directoryOrJar) throws IOException {
+        URL[] urls = {directoryOrJar.toUri().toURL()};
+        classLoader = new URLClassLoader(urls, CatScriptProgram.class.getClassLoader());
+        Manifest manifest = readManifest(directoryOrJar);
+        String version = manifest == null ? null :
+                manifest.getMainAttributes().getValue(CompiledProgramWriter.FORMAT_VERSION_ATTRIBUTE);
+        currentFormat = Integer.toString(CompiledProgramWriter.FORMAT_VERSION).equals(version);
+    }
+
+    private static Manifest readManifest(Path directoryOrJar) throws IOException {
+        if (Files.isDirectory(directoryOrJar)) {
+            Path manifestFile = directoryOrJar.resolve(JarFile.MANIFEST_NAME);
+            if (!Files.exists(manifestFile)) {
+                return null;
+            }
+            try (InputStream in = Files.newInputStream(manifestFile)) {
+                return new Manifest(in);
+            }
+        }
+        try (JarFile jar = new JarFile(directoryOrJar.toFile())) {
+            return jar.getManifest();
+        }
+    }
+
+    // returns null if the script wasn't compiled ahead of time, or by another compiler version
+    public Class<? extends CatScriptProgram> loadProgramClass(String source) {
+        if (!currentFormat) {
+            return null;
+        }
+        try {
+            Class<?> clazz = Class.forName(CompiledProgramWriter.classNameFor(source), true, classLoader);
+            return clazz.asSubclass(CatScriptProgram.class);
+        } catch (ClassNotFoundException e) {
+            return null;
+        }
+    }
+
+    public CatScriptProgram instantiate(String source) {
+        Class<? extends CatScriptProgram> programClass = loadProgramClass(source);
+        if (programClass == null) {
+            return null;
+        }
+        return ByteCodeGenerator.newInstance(programClass);
+    }
+
+    @Override
+    public void close() throws IOException {
+        classLoader.close();
+    }
+}
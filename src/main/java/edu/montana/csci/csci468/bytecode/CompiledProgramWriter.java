@@ -0,0 +1,90 @@
+package edu.montana.csci.csci468.bytecode;
+
+import edu.montana.csci.csci468.parser.CatScriptParser;
+import edu.montana.csci.csci468.parser.statements.CatScriptProgram;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+// Ahead-of-time compilation: scripts are compiled once and their class files written to a
+// directory or a jar, for CompiledProgramLoader to pick up in a later JVM.  Class names are
+// derived from the format version and the script's source, so the same script always maps
+// to the same class for a given compiler.  The version is also written to the manifest.
+public class CompiledProgramWriter {
+
+    static final String PACKAGE_NAME = "edu.montana.csci.csci466.bytecode";
+    // bump whenever generated classes change shape or call into the runtime differently, so
+    // class files written by an older compiler are never loaded
+    static final int FORMAT_VERSION = 2;
+    static final Attributes.Name FORMAT_VERSION_ATTRIBUTE = new Attributes.Name("CatScript-Format-Version");
+
+    public static String classNameFor(String source) {
+        return PACKAGE_NAME + ".CatScriptProgram_v" + FORMAT_VERSION + "_" + CompiledProgramCache.hash(source);
+    }
+
+    // scripts are all compiled before anything is written, parse errors are thrown as
+    // ParseErrorExceptions; returns the names of the classes written
+    public static List<String> writeToDirectory(Path directory, Iterable<String> sources) throws IOException {
+        Map<String, byte[]> classes = compile(sources);
+        Path manifestFile = directory.resolve(JarFile.MANIFEST_NAME);
+        Files.createDirectories(manifestFile.getParent());
+        try (OutputStream out = Files.newOutputStream(manifestFile)) {
+            manifest().write(out);
+        }
+        for (Map.Entry<String, byte[]> entry : classes.entrySet()) {
+            Path classFile = directory.resolve(entryNameFor(entry.getKey()));
+            Files.createDirectories(classFile.getParent());
+            Files.write(classFile, entry.getValue());
+        }
+        return new ArrayList<>(classes.keySet());
+    }
+
+    public static List<String> writeToJar(Path jar, Iterable<String> sources) throws IOException {
+        Map<String, byte[]> classes = compile(sources);
+        try (OutputStream out = Files.newOutputStream(jar);
+             JarOutputStream jarOut = new JarOutputStream(out, manifest())) {
+            for (Map.Entry<String, byte[]> entry : classes.entrySet()) {
+                jarOut.putNextEntry(new JarEntry(entryNameFor(entry.getKey())));
+                jarOut.write(entry.getValue());
+                jarOut.closeEntry();
+            }
+        }
+        return new ArrayList<>(classes.keySet());
+    }
+
+    // class name to class file, duplicate scripts are compiled once
+    private static Map<String, byte[]> compile(Iterable<String> sources) {
+        Map<String, byte[]> classes = new LinkedHashMap<>();
+        for (String source : sources) {
+            String className = classNameFor(source);
+            if (!classes.containsKey(className)) {
+                CatScriptProgram program = new CatScriptParser().parse(source);
+                program.verify();
+                classes.put(className, new ByteCodeGenerator(program).compileToClassFile(className));
+            }
+        }
+        return classes;
+    }
+
+    private static Manifest manifest() {
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        manifest.getMainAttributes().put(FORMAT_VERSION_ATTRIBUTE, Integer.toString(FORMAT_VERSION));
+        return manifest;
+    }
+
+    private static String entryNameFor(String className) {
+        return className.replace('.', '/') + ".class";
+    }
+}
@@ -3,31 +3,65 @@ package edu.montana.csci.csci468.bytecode;
 import org.objectweb.asm.*;
 
 import java.util.HashMap;
+import java.util.LinkedList;
 import java.util.Map;
-import java.util.concurrent.atomic.AtomicInteger;
 
 public class MethodGenerator implements AutoCloseable {
 
-    private AtomicInteger localStorageSlot = new AtomicInteger();
-    Map<String, Integer> localStorageMap = new HashMap<>();
+    // slot 0 is this; block scopes give their slots back when they close, so sibling blocks
+    // reuse them and max_locals only grows as deep as the deepest nesting
+    private int nextSlot = 1;
+    private final LinkedList<Integer> scopeStarts = new LinkedList<>();
+    private final LinkedList<Map<String, Integer>> scopes = new LinkedList<>();
     private final MethodVisitor delegate;
 
     public Integer nextLocalStorageSlot() {
-        return localStorageSlot.incrementAndGet();
+        return nextLocalStorageSlot(1);
+    }
+
+    // width is 2 for longs and doubles, 1 for everything else
+    public Integer nextLocalStorageSlot(int width) {
+        int slot = nextSlot;
+        nextSlot += width;
+        return slot;
     }
 
     public Integer createLocalStorageSlotFor(String name){
         int i = nextLocalStorageSlot();
-        localStorageMap.put(name, i);
+        scopes.peek().put(name, i);
         return i;
     }
 
     public Integer resolveLocalStorageSlotFor(String name) {
-        return localStorageMap.get(name);
+        for (Map<String, Integer> scope : scopes) {
+            Integer slot = scope.get(name);
+            if (slot != null) {
+                return slot;
+            }
+        }
+        return null;
+    }
+
+    public void pushScope() {
+        scopeStarts.push(nextSlot);
+        scopes.push(new HashMap<>());
+    }
+
+    public void popScope() {
+        nextSlot = scopeStarts.pop();
+        scopes.pop();
     }
 
     public MethodGenerator(MethodVisitor delgate) {
         this.delegate = delgate;
+        scopes.push(new HashMap<>());
+    }
+
+    // bytes of code written so far
+    public int getCodeSize() {
+        Label here = new Label();
+        delegate.visitLabel(here);
+        return here.getOffset();
     }
 
     @Override
@@ -61,6 +95,18 @@ public class MethodGenerator implements AutoCloseable {
         delegate.visitMethodInsn(opcode, owner, name, descriptor);
     }
 
+    public void addInvokeDynamicInstruction(String name, String descriptor, Handle bootstrapMethod, Object... bootstrapArguments) {
+        delegate.visitInvokeDynamicInsn(name, descriptor, bootstrapMethod, bootstrapArguments);
+    }
+
+    public void addIncrementInstruction(int var, int increment) {
+        delegate.visitIincInsn(var, increment);
+    }
+
+    public void addTableSwitchInstruction(int min, int max, Label defaultLabel, Label... labels) {
+        delegate.visitTableSwitchInsn(min, max, defaultLabel, labels);
+    }
+
     public void addJumpInstruction(int opcode, Label label) {
         delegate.visitJumpInsn(opcode, label);
     }
@@ -0,0 +1,93 @@
+package edu.montana.csci.csci468.bytecode;
+
+import edu.montana.csci.csci468.parser.statements.CatScriptProgram;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Many scripts compiled into a few shared classes instead of one class each, for jobs that
+// run thousands of small scripts.  Scripts are added to a class until its constant pool
+// passes a budget, which keeps it well inside the class file limit of 65535 constants
+// (the class gets at most one script more than the budget allows).
+public class ScriptBatch {
+
+    public static final int DEFAULT_CONSTANT_POOL_BUDGET = 16384;
+
+    private static final MethodType FACTORY_TYPE = MethodType.methodType(CatScriptProgram.class, int.class);
+
+    // per class, the constructor taking the script index, and the first script it holds
+    private final MethodHandle[] factories;
+    private final int[] firstScripts;
+    private final int size;
+
+    private ScriptBatch(MethodHandle[] factories, int[] firstScripts, int size) {
+        this.factories = factories;
+        this.firstScripts = firstScripts;
+        this.size = size;
+    }
+
+    // the programs must already be verified
+    public static ScriptBatch compile(List<CatScriptProgram> programs) {
+        return compile(programs, DEFAULT_CONSTANT_POOL_BUDGET);
+    }
+
+    public static ScriptBatch compile(List<CatScriptProgram> programs, int constantPoolBudget) {
+        if (programs.isEmpty()) {
+            throw new IllegalArgumentException("A batch needs at least one program");
+        }
+        if (constantPoolBudget < 1) {
+            throw new IllegalArgumentException("constantPoolBudget must be positive: " + constantPoolBudget);
+        }
+        List<MethodHandle> factories = new ArrayList<>();
+        int[] firstScripts = new int[programs.size()];
+        int script = 0;
+        while (script < programs.size()) {
+            firstScripts[factories.size()] = script;
+            ByteCodeGenerator code = ByteCodeGenerator.startBatch();
+            do {
+                code.addToBatch(programs.get(script++));
+            } while (script < programs.size() && code.getConstantPoolSize() < constantPoolBudget);
+            factories.add(factoryFor(code.finishBatch()));
+        }
+        return new ScriptBatch(factories.toArray(new MethodHandle[0]),
+                Arrays.copyOf(firstScripts, factories.size()), programs.size());
+    }
+
+    private static MethodHandle factoryFor(Class<? extends CatScriptProgram> programClass) {
+        try {
+            MethodHandle constructor = MethodHandles.publicLookup()
+                    .findConstructor(programClass, MethodType.methodType(void.class, int.class));
+            return constructor.asType(FACTORY_TYPE);
+        } catch (ReflectiveOperationException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getClassCount() {
+        return factories.length;
+    }
+
+    // a new program that runs the given script, with its own output and globals
+    public CatScriptProgram newInstance(int script) {
+        if (script < 0 || script >= size) {
+            throw new IndexOutOfBoundsException("script " + script + " of " + size);
+        }
+        int index = Arrays.binarySearch(firstScripts, script);
+        int programClass = index >= 0 ? index : -index - 2;
+        try {
+            return (CatScriptProgram) factories[programClass].invokeExact(script - firstScripts[programClass]);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new RuntimeException(t);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package edu.montana.csci.csci468.eval;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+// A list<bool> packed 64 to a long, see IntList.
+public class BooleanList extends AbstractList<Boolean> implements RandomAccess {
+
+    private long[] bits;
+    private int size;
+
+    public BooleanList() {
+        this(64);
+    }
+
+    public BooleanList(int capacity) {
+        bits = new long[(capacity + 63) >> 6];
+    }
+
+    // the list itself if it is already a BooleanList, otherwise an unboxed copy
+    public static BooleanList from(List<?> list) {
+        if (list instanceof BooleanList) {
+            return (BooleanList) list;
+        }
+        BooleanList copy = new BooleanList(list.size());
+        for (Object value : list) {
+            copy.addBoolean((Boolean) value);
+        }
+        return copy;
+    }
+
+    public boolean getBoolean(int index) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return (bits[index >> 6] & (1L << index)) != 0;
+    }
+
+    public void addBoolean(boolean value) {
+        if (size == bits.length << 6) {
+            bits = Arrays.copyOf(bits, Math.max(1, bits.length * 2));
+        }
+        if (value) {
+            bits[size >> 6] |= 1L << size;
+        }
+        size++;
+    }
+
+    @Override
+    public Boolean get(int index) {
+        return getBoolean(index);
+    }
+
+    @Override
+    public boolean add(Boolean value) {
+        addBoolean(value);
+        return true;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+}
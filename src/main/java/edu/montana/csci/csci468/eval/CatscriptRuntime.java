@@ -1,46 +1,85 @@
 package edu.montana.csci.csci468.eval;
 
-import java.util.HashMap;
-import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.Map;
+import java.util.Arrays;
 
-// TODO - implement proper scoping
+// Variables are resolved to (depth, slot) addresses by SymbolTable during validation.
+// CatScript functions do not nest, so a depth of 0 is the current frame and anything
+// deeper is the global frame.
 public class CatscriptRuntime {
-    LinkedList<Map<String, Object>> scopes = new LinkedList<>();
+    private Object[] globalFrame;
+    private Object[] currentFrame;
+    private boolean returning;
+    private Object returnValue;
+    private int compileThreshold = -1;
 
     public CatscriptRuntime(){
-        HashMap<String, Object> globalScope = new HashMap<>();
-        scopes.push(globalScope);
+        this(0);
     }
 
-    public Object getValue(String name) {
-        Iterator<Map<String, Object>> mapIterator = scopes.descendingIterator();
-        while (mapIterator.hasNext()) {
-            Map<String, Object> scope = mapIterator.next();
-            if (scope.containsKey(name)) {
-                return scope.get(name);
-            }
-        }
-        return null;
+    public CatscriptRuntime(int globalSlots) {
+        globalFrame = new Object[globalSlots];
+        currentFrame = globalFrame;
+    }
+
+    // functions are compiled once their invocations plus loop iterations reach the
+    // threshold, a negative threshold never compiles
+    public int getCompileThreshold() {
+        return compileThreshold;
+    }
+
+    public void setCompileThreshold(int compileThreshold) {
+        this.compileThreshold = compileThreshold;
+    }
+
+    public Object getValue(int depth, int slot) {
+        return frameAt(depth)[slot];
+    }
+
+    public void setValue(int depth, int slot, Object val) {
+        frameAt(depth)[slot] = val;
+    }
+
+    private Object[] frameAt(int depth) {
+        return depth == 0 ? currentFrame : globalFrame;
     }
 
-    public void setValue(String variableName, Object val) {
-        for (Map<String, Object> scope : scopes) {
-            if (scope.containsKey(variableName)) {
-                scope.put(variableName, val);
-                return;
+    public void reserveGlobalSlots(int size) {
+        if (globalFrame.length < size) {
+            boolean atTopLevel = currentFrame == globalFrame;
+            globalFrame = Arrays.copyOf(globalFrame, size);
+            if (atTopLevel) {
+                currentFrame = globalFrame;
             }
         }
-        scopes.peekLast().put(variableName, val);
     }
 
-    public void pushScope() {
-        scopes.push(new HashMap<>());
+    // makes the given frame current, returning the caller's frame to hand back to popFrame
+    public Object[] pushFrame(Object[] frame) {
+        Object[] callerFrame = currentFrame;
+        currentFrame = frame;
+        return callerFrame;
+    }
+
+    public void popFrame(Object[] callerFrame) {
+        currentFrame = callerFrame;
+    }
+
+    // a return statement raises this flag; statement sequences check it after
+    // each statement and stop, and the invoking function takes the value
+    public void returnWith(Object value) {
+        returnValue = value;
+        returning = true;
+    }
+
+    public boolean isReturning() {
+        return returning;
     }
 
-    public void popScope() {
-        scopes.pop();
+    public Object takeReturnValue() {
+        Object value = returnValue;
+        returnValue = null;
+        returning = false;
+        return value;
     }
 
 }
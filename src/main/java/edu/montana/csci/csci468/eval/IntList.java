@@ -0,0 +1,65 @@
+package edu.montana.csci.csci468.eval;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+// A list<int> backed by a growable int[].  Both backends build one for list literals whose
+// elements are all ints and loop over it with getInt, so the elements are never boxed
+// unless the list is used as a plain List.
+public class IntList extends AbstractList<Integer> implements RandomAccess {
+
+    private int[] values;
+    private int size;
+
+    public IntList() {
+        this(10);
+    }
+
+    public IntList(int capacity) {
+        values = new int[capacity];
+    }
+
+    // the list itself if it is already an IntList, otherwise an unboxed copy
+    public static IntList from(List<?> list) {
+        if (list instanceof IntList) {
+            return (IntList) list;
+        }
+        IntList copy = new IntList(list.size());
+        for (Object value : list) {
+            copy.addInt((Integer) value);
+        }
+        return copy;
+    }
+
+    public int getInt(int index) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return values[index];
+    }
+
+    public void addInt(int value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, Math.max(10, size + (size >> 1)));
+        }
+        values[size++] = value;
+    }
+
+    @Override
+    public Integer get(int index) {
+        return getInt(index);
+    }
+
+    @Override
+    public boolean add(Integer value) {
+        addInt(value);
+        return true;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+}
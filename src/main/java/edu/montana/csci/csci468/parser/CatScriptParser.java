@@ -3,11 +3,20 @@ package edu.montana.csci.csci468.parser;
 import edu.montana.csci.csci468.parser.expressions.*;
 import edu.montana.csci.csci468.parser.statements.*;
 import edu.montana.csci.csci468.tokenizer.CatScriptTokenizer;
-import edu.montana.csci.csci468.tokenizer.Token;
 import edu.montana.csci.csci468.tokenizer.TokenList;
 import edu.montana.csci.csci468.tokenizer.TokenType;
 
 import javax.swing.plaf.nimbus.State;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -19,37 +28,144 @@ public class CatScriptParser {
     private FunctionDefinitionStatement currentFunctionDefinition;
 
     public CatScriptProgram parse(String source) {
-        tokens = new CatScriptTokenizer(source).getTokens();
+        return parse(new CatScriptTokenizer(source).getTokens());
+    }
 
-        // first parse an expression
+    // Decides between a bare expression and a program from the first two tokens, so the
+    // input is parsed exactly once and the token list never has to be rewound.
+    private CatScriptProgram parse(TokenList tokenList) {
+        tokens = tokenList;
         CatScriptProgram program = new CatScriptProgram();
-        program.setStart(tokens.getCurrentToken());
-        Expression expression = null;
-        try {
-            expression = parseExpression();
-        } catch(RuntimeException re) {
-            // ignore :)
-        }
-        if (expression == null || tokens.hasMoreTokens()) {
-            tokens.reset();
-            while (tokens.hasMoreTokens()) {
-                program.addStatement(parseProgramStatement());
+        program.setTokens(tokenList);
+        int first = tokens.getCurrentIndex();
+        program.setStart(tokens, first);
+
+        if (startsExpression()) {
+            Expression expression = parseExpression();
+            if (!tokens.hasMoreTokens()) {
+                program.setExpression(expression);
+                program.setEnd(tokens, tokens.getCurrentIndex());
+                return program;
+            }
+            // more follows, so this was the first statement of a program
+            if (expression instanceof FunctionCallExpression) {
+                program.addStatement(new FunctionCallStatement((FunctionCallExpression) expression));
+            } else {
+                program.addStatement(new SyntaxErrorStatement(tokens, first));
+            }
+        }
+        while (tokens.hasMoreTokens()) {
+            program.addStatement(parseProgramStatement());
+        }
+
+        program.setEnd(tokens, tokens.getCurrentIndex());
+        return program;
+    }
+
+    private boolean startsExpression() {
+        if (tokens.match(IDENTIFIER)) {
+            // an assignment starts a program, a call may go either way
+            return tokens.lookAhead(1) != EQUAL;
+        }
+        return tokens.match(INTEGER, STRING, TRUE, FALSE, NULL, LEFT_BRACKET, LEFT_PAREN, MINUS, NOT);
+    }
+
+    // Streams the source through the tokenizer, statements are parsed as their tokens are read
+    public CatScriptProgram parse(Reader source) {
+        return parse(new CatScriptTokenizer(source).getTokens());
+    }
+
+    public CatScriptProgram parse(ReadableByteChannel source) {
+        return parse(Channels.newReader(source, StandardCharsets.UTF_8));
+    }
+
+    // Parses a UTF-8 script straight out of a mapped file, see CatScriptTokenizer(ByteBuffer)
+    public CatScriptProgram parse(MappedByteBuffer source) {
+        return parse(new CatScriptTokenizer(source).getTokens());
+    }
+
+    // Maps the file rather than reading it onto the heap, the mapping outlives the channel
+    public CatScriptProgram parseFile(Path file) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return parse(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Parses the previous program's source with the given edit applied, reusing the
+    // top-level statements the edit can not have changed.  Parsing starts at the statement
+    // the edit lands in (or directly follows, as an expression may run on into the edited
+    // text) and stops as soon as it reaches the start of an old statement past the edit;
+    // from there on the old statements are kept, shifted onto the new source.
+    //
+    // The kept statements are moved into the new program rather than copied, so the
+    // previous program is used up and must not be executed or verified again.  What its
+    // runs left on them (folded constants, function profiles and compiled code) is cleared.
+    public CatScriptProgram reparse(CatScriptProgram previous, int offset, int removedLength, String insertedText) {
+        List<Statement> old = previous.getStatements();
+        // the last statement starting before the edit, or the first one
+        int low = 0;
+        int high = old.size() - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (old.get(mid).getStartPosition() < offset) {
+                low = mid;
+            } else {
+                high = mid - 1;
             }
-        } else {
-            program.setExpression(expression);
+        }
+        int first = Math.max(0, low);
+        int resumeAt = first == 0 ? 0 : old.get(first).getStartPosition();
+        TokenList edited = previous.getTokens().getTokenizer()
+                .edit(offset, removedLength, insertedText, resumeAt).getTokens();
+        tokens = edited;
+        if (previous.isExpression() || first == 0 && startsExpression()) {
+            return parse(edited);
         }
 
-        program.setEnd(tokens.getCurrentToken());
+        CatScriptProgram program = new CatScriptProgram();
+        program.setTokens(edited);
+        for (int i = 0; i < first; i++) {
+            old.get(i).resetRuntimeState();
+            program.addStatement(old.get(i));
+        }
+        program.setStart(tokens, tokens.getCurrentIndex());
+
+        int delta = insertedText.length() - removedLength;
+        int editEnd = offset + insertedText.length();
+        int next = first + 1;
+        while (tokens.hasMoreTokens()) {
+            int position = tokens.getStart(tokens.getCurrentIndex());
+            if (position >= editEnd) {
+                while (next < old.size() && old.get(next).getStartPosition() < position - delta) {
+                    next++;
+                }
+                if (next < old.size() && old.get(next).getStartPosition() == position - delta) {
+                    // back in step with the old program
+                    for (int i = next; i < old.size(); i++) {
+                        old.get(i).shift(delta);
+                        old.get(i).resetRuntimeState();
+                        program.addStatement(old.get(i));
+                    }
+                    program.setEnd(previous);
+                    program.shift(previous.getShift() + delta);
+                    return program;
+                }
+            }
+            program.addStatement(parseProgramStatement());
+        }
+        program.setEnd(tokens, tokens.getCurrentIndex());
         return program;
     }
 
     public CatScriptProgram parseAsExpression(String source) {
         tokens = new CatScriptTokenizer(source).getTokens();
         CatScriptProgram program = new CatScriptProgram();
-        program.setStart(tokens.getCurrentToken());
+        program.setStart(tokens, tokens.getCurrentIndex());
         Expression expression = parseExpression();
         program.setExpression(expression);
-        program.setEnd(tokens.getCurrentToken());
+        program.setEnd(tokens, tokens.getCurrentIndex());
         return program;
     }
 
@@ -90,7 +206,7 @@ public class CatScriptParser {
 
         // identifier
         if (tokens.match(IDENTIFIER)) {
-            Token token = tokens.consumeToken();
+            int token = tokens.consumeIndex();
             if (tokens.matchAndConsume(EQUAL)) {
                 return parseAssignmentStatement(token);
             }
@@ -102,7 +218,7 @@ public class CatScriptParser {
             }
         }
 
-        return new SyntaxErrorStatement(tokens.consumeToken());
+        return new SyntaxErrorStatement(tokens, tokens.consumeIndex());
     }
 
     // This is a helper method to help reduce code redundency
@@ -117,7 +233,7 @@ public class CatScriptParser {
 
     private TypeLiteral parseTypeLiteral() {
         TypeLiteral typeLiteral = new TypeLiteral();
-        String type_lit_str = tokens.consumeToken().getStringValue();
+        String type_lit_str = tokens.getStringValue(tokens.consumeIndex());
         if (type_lit_str.equals("int")) {
             typeLiteral.setType(CatscriptType.INT);
         } else if (type_lit_str.equals("string")) {
@@ -142,11 +258,11 @@ public class CatScriptParser {
         if (tokens.match(PRINT)) {
 
             PrintStatement printStatement = new PrintStatement();
-            printStatement.setStart(tokens.consumeToken());
+            printStatement.setStart(tokens, tokens.consumeIndex());
 
             require(LEFT_PAREN, printStatement);
             printStatement.setExpression(parseExpression());
-            printStatement.setEnd(require(RIGHT_PAREN, printStatement));
+            printStatement.setEnd(tokens, require(RIGHT_PAREN, printStatement));
 
             return printStatement;
         } else {
@@ -160,12 +276,12 @@ public class CatScriptParser {
         }
 
         ForStatement forStmt = new ForStatement();
-        forStmt.setStart(tokens.consumeToken());
+        forStmt.setStart(tokens, tokens.consumeIndex());
 
         require(LEFT_PAREN, forStmt);
 
-        Token forStmtVariableToken = require(IDENTIFIER, forStmt);
-        forStmt.setVariableName(forStmtVariableToken.getStringValue());
+        int forStmtVariableToken = require(IDENTIFIER, forStmt);
+        forStmt.setVariableName(tokens.getStringValue(forStmtVariableToken));
 
         require(IN, forStmt);
 
@@ -177,9 +293,9 @@ public class CatScriptParser {
         List<Statement> bodyStatements = parseProgramBodyStatements();
         forStmt.setBody(bodyStatements);
 
-        Token forStmtEndBraceToken =  require(RIGHT_BRACE, forStmt);
-        if (forStmtEndBraceToken.getType().equals(RIGHT_BRACE)) {
-            forStmt.setEnd(forStmtEndBraceToken);
+        int forStmtEndBraceToken =  require(RIGHT_BRACE, forStmt);
+        if (tokens.getType(forStmtEndBraceToken).equals(RIGHT_BRACE)) {
+            forStmt.setEnd(tokens, forStmtEndBraceToken);
         }
 
         return forStmt;
@@ -191,7 +307,7 @@ public class CatScriptParser {
         }
 
         IfStatement ifStmt = new IfStatement();
-        ifStmt.setStart(tokens.consumeToken());
+        ifStmt.setStart(tokens, tokens.consumeIndex());
 
         require(LEFT_PAREN, ifStmt);
         ifStmt.setExpression(parseExpression());
@@ -202,13 +318,13 @@ public class CatScriptParser {
         List<Statement> bodyStatements = parseProgramBodyStatements();
         ifStmt.setTrueStatements(bodyStatements);
 
-        Token ifStmtEndBraceToken = require(RIGHT_BRACE, ifStmt);
+        int ifStmtEndBraceToken = require(RIGHT_BRACE, ifStmt);
 
         if (tokens.matchAndConsume(ELSE)) {
             List<Statement> elseStatements = new ArrayList<>();
             if (tokens.match(IF)) {
                 Statement elseIfStmt = parseIfStatement();
-                ifStmtEndBraceToken = elseIfStmt.getEnd();
+                ifStmtEndBraceToken = elseIfStmt.getEndIndex();
                 elseStatements.add(elseIfStmt);
             } else {
                 require(LEFT_BRACE, ifStmt);
@@ -219,8 +335,8 @@ public class CatScriptParser {
             ifStmt.setElseStatements(elseStatements);
         }
 
-        if (ifStmtEndBraceToken.getType().equals(RIGHT_BRACE)) {
-            ifStmt.setEnd(ifStmtEndBraceToken);
+        if (ifStmtEndBraceToken >= 0 && tokens.getType(ifStmtEndBraceToken).equals(RIGHT_BRACE)) {
+            ifStmt.setEnd(tokens, ifStmtEndBraceToken);
         }
 
         return ifStmt;
@@ -232,8 +348,8 @@ public class CatScriptParser {
         }
 
         VariableStatement varStmt = new VariableStatement();
-        varStmt.setStart(tokens.consumeToken());
-        varStmt.setVariableName(require(IDENTIFIER, varStmt).getStringValue());
+        varStmt.setStart(tokens, tokens.consumeIndex());
+        varStmt.setVariableName(tokens.getStringValue(require(IDENTIFIER, varStmt)));
         // check for type literal
         if (tokens.matchAndConsume(COLON)) {
             // parse (get) type literal
@@ -243,7 +359,7 @@ public class CatScriptParser {
         }
         require(EQUAL, varStmt);
         Expression varExpression = parseExpression();
-        varStmt.setEnd(varExpression.getEnd());
+        varStmt.setEnd(varExpression);
         varStmt.setExpression(varExpression);
 
         return varStmt;
@@ -255,14 +371,14 @@ public class CatScriptParser {
         }
         FunctionDefinitionStatement fncDefStmt = new FunctionDefinitionStatement();
         currentFunctionDefinition = fncDefStmt;
-        fncDefStmt.setStart(tokens.consumeToken());
+        fncDefStmt.setStart(tokens, tokens.consumeIndex());
 
-        fncDefStmt.setName(require(IDENTIFIER, fncDefStmt).getStringValue());
+        fncDefStmt.setName(tokens.getStringValue(require(IDENTIFIER, fncDefStmt)));
 
         require(LEFT_PAREN, fncDefStmt);
         while(tokens.hasMoreTokens() && !tokens.match(RIGHT_PAREN)) {
-            Token fncParam = tokens.consumeToken();
-            String fncParamString = fncParam.getStringValue();
+            int fncParam = tokens.consumeIndex();
+            String fncParamString = tokens.getStringValue(fncParam);
             TypeLiteral fncParamType = null;
             if (tokens.matchAndConsume(COLON)) {
                 fncParamType = parseTypeLiteral();
@@ -283,30 +399,30 @@ public class CatScriptParser {
         require(LEFT_BRACE, fncDefStmt);
         List<Statement> bodyStatements = parseProgramBodyStatements();
         fncDefStmt.setBody(bodyStatements);
-        fncDefStmt.setEnd(require(RIGHT_BRACE, fncDefStmt));
+        fncDefStmt.setEnd(tokens, require(RIGHT_BRACE, fncDefStmt));
 
         return fncDefStmt;
     }
 
-    private Statement parseAssignmentStatement(Token name) {
+    private Statement parseAssignmentStatement(int name) {
         AssignmentStatement assignmentStmt = new AssignmentStatement();
-        assignmentStmt.setStart(name);
-        assignmentStmt.setVariableName(name.getStringValue());
+        assignmentStmt.setStart(tokens, name);
+        assignmentStmt.setVariableName(tokens.getStringValue(name));
         Expression expression = parseExpression();
         assignmentStmt.setExpression(expression);
-        assignmentStmt.setEnd(expression.getEnd());
+        assignmentStmt.setEnd(expression);
         return assignmentStmt;
     }
 
     private Statement parseReturnStatement() {
         ReturnStatement returnStmt = new ReturnStatement();
         require(RETURN, returnStmt);
-        returnStmt.setStart(tokens.lastToken());
+        returnStmt.setStart(tokens, tokens.lastIndex());
         if (tokens.hasMoreTokens() && !tokens.match(RIGHT_BRACE)) {
             returnStmt.setExpression(parseExpression());
-            returnStmt.setEnd(returnStmt.getExpression().getEnd());
+            returnStmt.setEnd(returnStmt.getExpression());
         } else {
-            returnStmt.setEnd(returnStmt.getStart());
+            returnStmt.setEnd(tokens, tokens.lastIndex());
         }
 
         returnStmt.setFunctionDefinition(currentFunctionDefinition);
@@ -327,9 +443,9 @@ public class CatScriptParser {
         if (!tokens.match(EQUAL_EQUAL, BANG_EQUAL)) {
             return lhsExpression;
         }
-        Token token = tokens.consumeToken();
+        TokenType operator = tokens.getType(tokens.consumeIndex());
         Expression rhsExpression = parseComparisonExpression();
-        return new EqualityExpression(token, lhsExpression, rhsExpression);
+        return new EqualityExpression(operator, lhsExpression, rhsExpression);
     }
 
     private Expression parseComparisonExpression() {
@@ -337,19 +453,19 @@ public class CatScriptParser {
         if (!tokens.match(GREATER, GREATER_EQUAL, LESS, LESS_EQUAL)) {
             return lhsExpression;
         }
-        Token token = tokens.consumeToken();
+        TokenType operator = tokens.getType(tokens.consumeIndex());
         Expression rhsExpression = parseAdditiveExpression();
-        return new ComparisonExpression(token, lhsExpression, rhsExpression);
+        return new ComparisonExpression(operator, lhsExpression, rhsExpression);
     }
 
     private Expression parseAdditiveExpression() {
         Expression lhsExpression = parseFactorExpression();
         while (tokens.match(PLUS, MINUS)) {
-            Token operator = tokens.consumeToken();
+            TokenType operator = tokens.getType(tokens.consumeIndex());
             final Expression rhsExpression = parseFactorExpression();
             AdditiveExpression additiveExpression = new AdditiveExpression(operator, lhsExpression, rhsExpression);
-            additiveExpression.setStart(lhsExpression.getStart());
-            additiveExpression.setEnd(rhsExpression.getEnd());
+            additiveExpression.setStart(lhsExpression);
+            additiveExpression.setEnd(rhsExpression);
             lhsExpression = additiveExpression;
         }
         return lhsExpression;
@@ -358,11 +474,11 @@ public class CatScriptParser {
     private Expression parseFactorExpression() {
         Expression lhsExpression = parseUnaryExpression();
         while (tokens.match(SLASH, STAR)) {
-            Token operator_token = tokens.consumeToken();
+            TokenType operator_token = tokens.getType(tokens.consumeIndex());
             final Expression rhsExpression = parseUnaryExpression();
             FactorExpression factorExpression = new FactorExpression(operator_token, lhsExpression, rhsExpression);
-            factorExpression.setStart(lhsExpression.getStart());
-            factorExpression.setEnd(rhsExpression.getEnd());
+            factorExpression.setStart(lhsExpression);
+            factorExpression.setEnd(rhsExpression);
             lhsExpression = factorExpression;
         }
         return lhsExpression;
@@ -372,47 +488,50 @@ public class CatScriptParser {
         if (!tokens.match(MINUS, NOT)) {
             return parsePrimaryExpression();
         }
-        Token token = tokens.consumeToken();
+        int token = tokens.consumeIndex();
+        TokenType operator = tokens.getType(token);
+        // a streaming list may drop the operator while the operand is parsed
+        tokens.retain(token);
         Expression rhs = parseUnaryExpression();
-        UnaryExpression unaryExpression = new UnaryExpression(token, rhs);
-        unaryExpression.setStart(token);
-        unaryExpression.setEnd(rhs.getEnd());
+        UnaryExpression unaryExpression = new UnaryExpression(operator, rhs);
+        unaryExpression.setStart(tokens, token);
+        unaryExpression.setEnd(rhs);
         return unaryExpression;
     }
 
     private Expression parsePrimaryExpression() {
         if (tokens.match(IDENTIFIER)) {
-            Token token = tokens.consumeToken();
+            int token = tokens.consumeIndex();
             // function call
             if (tokens.matchAndConsume(LEFT_PAREN)) {
                 return parseFunctionCallStatement(token);
             }
-            String token_value = token.getStringValue();
+            String token_value = tokens.getStringValue(token);
             IdentifierExpression identifierExpression = new IdentifierExpression(token_value);
-            identifierExpression.setToken(token);
+            identifierExpression.setToken(tokens, token);
             return identifierExpression;
         } else if (tokens.match(INTEGER)) {
-            Token integerToken = tokens.consumeToken();
-            IntegerLiteralExpression integerExpression = new IntegerLiteralExpression(integerToken.getStringValue());
-            integerExpression.setToken(integerToken);
+            int integerToken = tokens.consumeIndex();
+            IntegerLiteralExpression integerExpression = new IntegerLiteralExpression(tokens.getStringValue(integerToken));
+            integerExpression.setToken(tokens, integerToken);
             return integerExpression;
         } else if (tokens.match(STRING)) {
-            Token token = tokens.consumeToken();
-            String token_value = token.getStringValue();
+            int token = tokens.consumeIndex();
+            String token_value = tokens.getStringValue(token);
             StringLiteralExpression stringExpression = new StringLiteralExpression(token_value);
             return stringExpression;
         } else if (tokens.match(TRUE)) {
-            Token token = tokens.consumeToken();
+            int token = tokens.consumeIndex();
             BooleanLiteralExpression booleanLiteralExpression = new BooleanLiteralExpression(true);
-            booleanLiteralExpression.setToken(token);
+            booleanLiteralExpression.setToken(tokens, token);
             return booleanLiteralExpression;
         } else if (tokens.match(FALSE)) {
-            Token token = tokens.consumeToken();
+            int token = tokens.consumeIndex();
             BooleanLiteralExpression booleanLiteralExpression = new BooleanLiteralExpression(false);
-            booleanLiteralExpression.setToken(token);
+            booleanLiteralExpression.setToken(tokens, token);
             return booleanLiteralExpression;
         } else if (tokens.match(NULL)) {
-            Token token = tokens.consumeToken();
+            tokens.consumeIndex();
             NullLiteralExpression nullLiteralExpression = new NullLiteralExpression();
             return nullLiteralExpression;
         } else if (tokens.matchAndConsume(LEFT_BRACKET)) { // list literal
@@ -433,38 +552,43 @@ public class CatScriptParser {
             require(RIGHT_PAREN, parenthesizedExpression);
             return parenthesizedExpression;
         } else {
-            SyntaxErrorExpression syntaxErrorExpression = new SyntaxErrorExpression(tokens.consumeToken());
+            SyntaxErrorExpression syntaxErrorExpression = new SyntaxErrorExpression(tokens, tokens.consumeIndex());
             return syntaxErrorExpression;
         }
     }
 
-    private FunctionCallExpression parseFunctionCallStatement(Token beginningToken) {
+    private FunctionCallExpression parseFunctionCallStatement(int beginningToken) {
+        // a streaming list may drop the name while the arguments are parsed
+        tokens.retain(beginningToken);
         List<Expression> functionCallArguments = new ArrayList<>(0);
         if(!tokens.match(RIGHT_PAREN)) {
             do {
                 functionCallArguments.add(parseExpression());
             } while (tokens.matchAndConsume(COMMA));
         }
-        FunctionCallExpression functionCallExpression = new FunctionCallExpression(beginningToken.getStringValue(), functionCallArguments);
+        FunctionCallExpression functionCallExpression = new FunctionCallExpression(tokens.getStringValue(beginningToken), functionCallArguments);
+        functionCallExpression.setStart(tokens, beginningToken);
         if(!tokens.matchAndConsume(RIGHT_PAREN)) {
             require(RIGHT_BRACKET, functionCallExpression, ErrorType.UNTERMINATED_ARG_LIST);
         }
+        functionCallExpression.setEnd(tokens, tokens.lastIndex());
         return functionCallExpression;
     }
 
     //============================================================
     //  Parse Helpers
     //============================================================
-    private Token require(TokenType type, ParseElement elt) {
+    // returns the index of the required token, or of the one found in its place
+    private int require(TokenType type, ParseElement elt) {
         return require(type, elt, ErrorType.UNEXPECTED_TOKEN);
     }
 
-    private Token require(TokenType type, ParseElement elt, ErrorType msg) {
+    private int require(TokenType type, ParseElement elt, ErrorType msg) {
         if(tokens.match(type)){
-            return tokens.consumeToken();
+            return tokens.consumeIndex();
         } else {
-            elt.addError(msg, tokens.getCurrentToken());
-            return tokens.getCurrentToken();
+            elt.addErrorAt(msg, tokens, tokens.getCurrentIndex());
+            return tokens.getCurrentIndex();
         }
     }
 
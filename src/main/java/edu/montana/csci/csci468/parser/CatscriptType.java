@@ -1,9 +1,10 @@
 package edu.montana.csci.csci468.parser;
 
-import java.util.HashMap;
 import java.util.List;
-import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 
+// Types are canonical: the constants below and one ListType per component type, so types
+// can be (and are) compared with ==.  equals and hashCode are left as identity.
 public class CatscriptType {
 
     public static final CatscriptType INT = new CatscriptType("int", Integer.class);
@@ -16,7 +17,7 @@ public class CatscriptType {
     private final String name;
     private final Class javaClass;
 
-    public CatscriptType(String name, Class javaClass) {
+    private CatscriptType(String name, Class javaClass) {
         this.name = name;
         this.javaClass = javaClass;
     }
@@ -32,23 +33,15 @@ public class CatscriptType {
         return false;
     }
 
-    // cache storage for ListTypes
-    static final HashMap<CatscriptType, ListType> LIST_TYPE_CACHE = new HashMap<>();
+    // list types keyed by their (canonical) component type
+    private static final ConcurrentHashMap<CatscriptType, ListType> LIST_TYPES = new ConcurrentHashMap<>();
 
     public static CatscriptType getListType(CatscriptType type) {
-        // get the list type from cache storage
-        ListType list_type = LIST_TYPE_CACHE.get(type);
-
-        // check if list_type exists
-        if (list_type == null) { // list_type does NOT exist
-            // create a new instance of the ListType
-            list_type = new ListType(type);
-            // insert the new list type instance into out cache storage
-            LIST_TYPE_CACHE.put(type, list_type);
+        ListType listType = LIST_TYPES.get(type);
+        if (listType == null) {
+            listType = LIST_TYPES.computeIfAbsent(type, ListType::new);
         }
-
-        // return the list_type
-        return list_type;
+        return listType;
     }
 
     @Override
@@ -56,26 +49,13 @@ public class CatscriptType {
         return name;
     }
 
-    @Override
-    public boolean equals(Object o) {
-        if (this == o) return true;
-        if (o == null || getClass() != o.getClass()) return false;
-        CatscriptType that = (CatscriptType) o;
-        return Objects.equals(name, that.name);
-    }
-
-    @Override
-    public int hashCode() {
-        return Objects.hash(name);
-    }
-
     public Class getJavaType() {
         return javaClass;
     }
 
     public static class ListType extends CatscriptType {
         private final CatscriptType componentType;
-        public ListType(CatscriptType componentType) {
+        private ListType(CatscriptType componentType) {
             super("list<" + componentType.toString() + ">", List.class);
             this.componentType = componentType;
         }
@@ -94,11 +74,6 @@ public class CatscriptType {
         public CatscriptType getComponentType() {
             return componentType;
         }
-
-        @Override
-        public String toString() {
-            return super.toString() + "<" + componentType.toString() + ">";
-        }
     }
 
 }
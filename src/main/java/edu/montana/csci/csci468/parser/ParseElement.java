@@ -5,22 +5,32 @@ import edu.montana.csci.csci468.eval.CatscriptRuntime;
 import edu.montana.csci.csci468.parser.statements.CatScriptProgram;
 import edu.montana.csci.csci468.parser.statements.FunctionDefinitionStatement;
 import edu.montana.csci.csci468.tokenizer.Token;
+import edu.montana.csci.csci468.tokenizer.TokenList;
 import org.objectweb.asm.Opcodes;
 
 import java.awt.*;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
 
 import static edu.montana.csci.csci468.bytecode.ByteCodeGenerator.internalNameFor;
 
 public abstract class ParseElement {
 
     protected ParseElement parent;
-    private Token start;
-    private Token end;
+    // start and end are indexes into the token list they were scanned into, Token objects
+    // are only made when someone asks for one
+    private TokenList tokens;
+    private int start = -1;
+    private int end = -1;
+    // top-level elements only: how far an incremental reparse has moved this element's
+    // tokens from where they were scanned, see CatScriptParser.reparse
+    private int shift;
     private List<ParseElement> children;
     private List<ParseError> errors;
+    // how many of the errors came from parsing, the rest are from the last verify
+    private int parseErrorCount = -1;
 
     public ParseElement() {
         this.errors = new LinkedList<>();
@@ -35,17 +45,37 @@ public abstract class ParseElement {
         }
     }
 
-    public void setStart(Token start) {
-        this.start = start;
+    public void setStart(TokenList tokens, int index) {
+        this.tokens = tokens;
+        this.start = index;
+        tokens.retain(index);
     }
 
-    public void setEnd(Token end) {
-        this.end = end;
+    public void setEnd(TokenList tokens, int index) {
+        this.tokens = tokens;
+        this.end = index;
+        tokens.retain(index);
     }
 
-    public void setToken(Token token) {
-        setStart(token);
-        setEnd(token);
+    public void setToken(TokenList tokens, int index) {
+        setStart(tokens, index);
+        setEnd(tokens, index);
+    }
+
+    // starts where the given element starts
+    public void setStart(ParseElement element) {
+        if (element.tokens != null) {
+            this.tokens = element.tokens;
+        }
+        this.start = element.start;
+    }
+
+    // ends where the given element ends
+    public void setEnd(ParseElement element) {
+        if (element.tokens != null) {
+            this.tokens = element.tokens;
+        }
+        this.end = element.end;
     }
 
     public ParseElement getParent() {
@@ -53,13 +83,59 @@ public abstract class ParseElement {
     }
 
     public Token getStart() {
-        return start;
+        return tokenAt(tokens, start);
     }
 
     public Token getEnd() {
+        return tokenAt(tokens, end);
+    }
+
+    protected int getStartIndex() {
+        return start;
+    }
+
+    protected int getEndIndex() {
         return end;
     }
 
+    // Makes the token at index in the given list, as it sits in the source of the program
+    // this element now belongs to.
+    Token tokenAt(TokenList tokenList, int index) {
+        if (index < 0) {
+            return null;
+        }
+        ParseElement top = this;
+        while (top.parent != null && !(top.parent instanceof CatScriptProgram)) {
+            top = top.parent;
+        }
+        ParseElement program = top.parent != null ? top.parent : top;
+        TokenList lines = program instanceof CatScriptProgram ? ((CatScriptProgram) program).getTokens() : null;
+        return tokenList.get(index, top.shift, lines != null ? lines : tokenList);
+    }
+
+    // where a top-level element starts in its program's source
+    protected int getStartPosition() {
+        return tokens.getStart(start) + shift;
+    }
+
+    // moves a top-level element delta characters on, along with every token under it
+    protected void shift(int delta) {
+        shift += delta;
+    }
+
+    protected int getShift() {
+        return shift;
+    }
+
+    // Clears what the program this element ran in left on it and its children: folded
+    // constants, function profiles and compiled code.  A reparse moves elements into a new
+    // program, which starts over with them.
+    protected void resetRuntimeState() {
+        for (ParseElement child : children) {
+            child.resetRuntimeState();
+        }
+    }
+
     public List<ParseError> getErrors() {
         return errors;
     }
@@ -69,11 +145,13 @@ public abstract class ParseElement {
     }
 
     public void addError(ErrorType errorType, Object... args) {
-        addError(errorType, getStart(), args);
+        errors.add(new ParseError(this, tokens, start, errorType, args));
     }
 
-    public void addError(ErrorType errorMessage, Token token, Object... args) {
-        errors.add(new ParseError(token, errorMessage, args));
+    // an error at some other token than the one this element starts at
+    public void addErrorAt(ErrorType errorType, TokenList tokens, int index, Object... args) {
+        tokens.retain(index);
+        errors.add(new ParseError(this, tokens, index, errorType, args));
     }
 
     protected <T extends ParseElement> T addChild(T element) {
@@ -110,9 +188,30 @@ public abstract class ParseElement {
 
 
     public final void verify() {
+        verify(null);
+    }
+
+    // validates top-level function bodies in parallel once the rest of the program has
+    // been validated, reporting the same errors as verify()
+    public final void verifyInParallel() {
+        verify(ForkJoinPool.commonPool());
+    }
+
+    public final void verifyInParallel(ForkJoinPool pool) {
+        verify(pool);
+    }
+
+    private void verify(ForkJoinPool pool) {
+        clearValidationErrors(this);
         SymbolTable symbolTable = new SymbolTable();
         registerFunctions(symbolTable);
-        validate(symbolTable);
+        if (pool == null) {
+            validate(symbolTable);
+        } else {
+            symbolTable.deferFunctionBodies();
+            validate(symbolTable);
+            symbolTable.validateDeferredFunctionBodies(pool);
+        }
 
         final LinkedList<ParseError> collector = new LinkedList<>();
         collectErrors(collector, this);
@@ -123,6 +222,18 @@ public abstract class ParseElement {
 
     public abstract void validate(SymbolTable symbolTable);
 
+    // elements reused by an incremental reparse are verified again
+    private void clearValidationErrors(ParseElement parseElement) {
+        if (parseElement.parseErrorCount < 0) {
+            parseElement.parseErrorCount = parseElement.errors.size();
+        } else {
+            parseElement.errors.subList(parseElement.parseErrorCount, parseElement.errors.size()).clear();
+        }
+        for (ParseElement child : parseElement.getChildren()) {
+            clearValidationErrors(child);
+        }
+    }
+
     private void collectErrors(LinkedList<ParseError> collector, ParseElement parseElement){
         collector.addAll(parseElement.getErrors());
         for (ParseElement child : parseElement.getChildren()) {
@@ -140,24 +251,24 @@ public abstract class ParseElement {
 
 
     protected void box(ByteCodeGenerator code, CatscriptType type) {
-        if (type.equals(CatscriptType.INT)) {
+        if (type == CatscriptType.INT) {
             code.addMethodInstruction(Opcodes.INVOKESTATIC, internalNameFor(Integer.class),
                     "valueOf", "(I)Ljava/lang/Integer;");
         }
-        if (type.equals(CatscriptType.BOOLEAN)) {
+        if (type == CatscriptType.BOOLEAN) {
             code.addMethodInstruction(Opcodes.INVOKESTATIC, internalNameFor(Boolean.class),
                     "valueOf", "(Z)Ljava/lang/Boolean;");
         }
     }
 
     protected void unbox(ByteCodeGenerator code, CatscriptType type) {
-        if (type.equals(CatscriptType.INT)) {
+        if (type == CatscriptType.INT) {
             code.addMethodInstruction(Opcodes.INVOKEVIRTUAL, internalNameFor(Integer.class),
                     "intValue", "()I");
         }
-        if (type.equals(CatscriptType.BOOLEAN)) {
+        if (type == CatscriptType.BOOLEAN) {
             code.addMethodInstruction(Opcodes.INVOKEVIRTUAL, internalNameFor(Boolean.class),
-                    "booleanValue", "()Z;");
+                    "booleanValue", "()Z");
         }
     }
 
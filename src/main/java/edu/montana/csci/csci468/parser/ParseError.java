@@ -1,21 +1,28 @@
 package edu.montana.csci.csci468.parser;
 
 import edu.montana.csci.csci468.tokenizer.Token;
+import edu.montana.csci.csci468.tokenizer.TokenList;
 
 public class ParseError {
 
-    private Token location;
+    // the location is made from its token index when asked for, so it follows the element
+    // when an incremental reparse moves it
+    private final ParseElement element;
+    private final TokenList tokens;
+    private final int tokenIndex;
     private ErrorType errorType;
     private String message;
 
-    public ParseError(Token location, ErrorType errorType, Object... args) {
-        this.location = location;
+    public ParseError(ParseElement element, TokenList tokens, int tokenIndex, ErrorType errorType, Object... args) {
+        this.element = element;
+        this.tokens = tokens;
+        this.tokenIndex = tokenIndex;
         this.errorType = errorType;
         this.message = String.format(errorType.toString(), args);
     }
 
     public Token getLocation() {
-        return location;
+        return element.tokenAt(tokens, tokenIndex);
     }
 
     public ErrorType getErrorType() {
@@ -24,12 +31,19 @@ public class ParseError {
 
     public String getFullMessage() {
         StringBuilder sb = new StringBuilder();
+        Token location = getLocation();
         String lineStart = "Line " + location.getLine() + ":";
-        sb.append(lineStart);
-        sb.append(location.getLineContent());
-        sb.append("\n");
-        sb.append(" ".repeat(lineStart.length() + location.getLineOffset() - 1));
-        sb.append("^\n\n");
+        String lineContent = location.getLineContent();
+        if (lineContent != null) {
+            sb.append(lineStart);
+            sb.append(lineContent);
+            sb.append("\n");
+            sb.append(" ".repeat(lineStart.length() + location.getLineOffset() - 1));
+            sb.append("^\n\n");
+        } else {
+            // streamed sources do not keep their lines around
+            sb.append("Line ").append(location.getLine()).append(", column ").append(location.getLineOffset()).append("\n\n");
+        }
         sb.append("Error: ");
         sb.append(message);
         return sb.toString();
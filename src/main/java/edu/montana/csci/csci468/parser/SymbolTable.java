@@ -2,18 +2,73 @@ package edu.montana.csci.csci468.parser;
 
 import edu.montana.csci.csci468.parser.statements.FunctionDefinitionStatement;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 public class SymbolTable {
 
     LinkedList<Map<String, Object>> symbolStack = new LinkedList<>();
+    LinkedList<Frame> frames = new LinkedList<>();
+    private final Map<String, Object> globalScope;
+    // globals are numbered as they are declared, only the first visibleGlobals can be seen
+    private int globalsDeclared;
+    private final int visibleGlobals;
+    // top-level function bodies put aside to be validated on their own tables, see verifyInParallel
+    private List<FunctionDefinitionStatement> deferredFunctions;
+    private List<Integer> deferredVisibleGlobals;
 
     public SymbolTable(){
-        HashMap<String, Object> globalScope = new HashMap<>();
+        globalScope = new HashMap<>();
+        visibleGlobals = Integer.MAX_VALUE;
         symbolStack.push(globalScope);
+        frames.push(new Frame());
+    }
+
+    // a table for validating a single function body, layered over the (by now read-only)
+    // global scope of the table the function was deferred on
+    private SymbolTable(SymbolTable globals, int visibleGlobals) {
+        globalScope = globals.globalScope;
+        this.visibleGlobals = visibleGlobals;
+        symbolStack.push(globalScope);
+        frames.push(new Frame());
+    }
+
+    public void deferFunctionBodies() {
+        deferredFunctions = new ArrayList<>();
+        deferredVisibleGlobals = new ArrayList<>();
+    }
+
+    // returns true if the function should not be validated now
+    public boolean deferFunctionBody(FunctionDefinitionStatement function) {
+        if (deferredFunctions == null || frames.size() > 1) {
+            return false;
+        }
+        deferredFunctions.add(function);
+        deferredVisibleGlobals.add(globalsDeclared);
+        return true;
+    }
+
+    // each function only sees the globals that were declared ahead of it, as it would have
+    // when validated in order; errors stay on the elements so they are still collected in
+    // source order
+    public void validateDeferredFunctionBodies(ForkJoinPool pool) {
+        List<ForkJoinTask<?>> tasks = new ArrayList<>(deferredFunctions.size());
+        for (int i = 0; i < deferredFunctions.size(); i++) {
+            FunctionDefinitionStatement function = deferredFunctions.get(i);
+            SymbolTable bodyTable = new SymbolTable(this, deferredVisibleGlobals.get(i));
+            tasks.add(pool.submit(() -> function.validate(bodyTable)));
+        }
+        for (ForkJoinTask<?> task : tasks) {
+            task.join();
+        }
+        deferredFunctions = null;
+        deferredVisibleGlobals = null;
     }
 
     public boolean hasSymbol(String name) {
@@ -26,6 +81,9 @@ public class SymbolTable {
             Map<String, Object> next =  mapIterator.next();
             Object val = next.get(name);
             if (val != null) {
+                if (next == globalScope && val instanceof Variable && ((Variable) val).order >= visibleGlobals) {
+                    continue;
+                }
                 return val;
             }
         }
@@ -37,13 +95,30 @@ public class SymbolTable {
     }
 
     public void registerSymbol(String name, CatscriptType type) {
-        symbolStack.peek().put(name, type);
+        Frame frame = frames.peek();
+        Map<String, Object> scope = symbolStack.peek();
+        int order = scope == globalScope ? globalsDeclared++ : -1;
+        scope.put(name, new Variable(type, frames.size() - 1, frame.allocateSlot(), order));
     }
 
     public CatscriptType getSymbolType(String name) {
+        Variable variable = getVariable(name);
+        return variable == null ? null : variable.type;
+    }
+
+    // number of frames between the current frame and the frame that declares the variable
+    public int getSymbolDepth(String name) {
+        return (frames.size() - 1) - getVariable(name).frame;
+    }
+
+    public int getSymbolSlot(String name) {
+        return getVariable(name).slot;
+    }
+
+    private Variable getVariable(String name) {
         Object object = getSymbol(name);
-        if (object instanceof CatscriptType) {
-            return (CatscriptType) object;
+        if (object instanceof Variable) {
+            return (Variable) object;
         } else {
             return null;
         }
@@ -60,9 +135,62 @@ public class SymbolTable {
 
     public void pushScope() {
         symbolStack.push(new HashMap<>());
+        frames.peek().enterScope();
     }
 
     public void popScope() {
         symbolStack.pop();
+        frames.peek().exitScope();
+    }
+
+    public void pushFrame() {
+        frames.push(new Frame());
+        pushScope();
+    }
+
+    // returns the number of slots the popped frame needs at runtime
+    public int popFrame() {
+        popScope();
+        return frames.pop().size;
+    }
+
+    public int getFrameSize() {
+        return frames.peek().size;
+    }
+
+    private static class Variable {
+        private final CatscriptType type;
+        private final int frame;
+        private final int slot;
+        private final int order;
+
+        private Variable(CatscriptType type, int frame, int slot, int order) {
+            this.type = type;
+            this.frame = frame;
+            this.slot = slot;
+            this.order = order;
+        }
+    }
+
+    // slots are handed out per function (or program) frame, block scopes
+    // give their slots back when they close so sibling blocks can reuse them
+    private static class Frame {
+        private final LinkedList<Integer> scopeStarts = new LinkedList<>();
+        private int nextSlot;
+        private int size;
+
+        private int allocateSlot() {
+            int slot = nextSlot++;
+            size = Math.max(size, nextSlot);
+            return slot;
+        }
+
+        private void enterScope() {
+            scopeStarts.push(nextSlot);
+        }
+
+        private void exitScope() {
+            nextSlot = scopeStarts.pop();
+        }
     }
 }
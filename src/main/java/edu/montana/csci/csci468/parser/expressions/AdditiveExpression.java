@@ -6,19 +6,31 @@ import edu.montana.csci.csci468.parser.CatscriptType;
 import edu.montana.csci.csci468.parser.ErrorType;
 import edu.montana.csci.csci468.parser.ParseError;
 import edu.montana.csci.csci468.parser.SymbolTable;
-import edu.montana.csci.csci468.tokenizer.Token;
 import edu.montana.csci.csci468.tokenizer.TokenType;
+import org.objectweb.asm.Handle;
 import org.objectweb.asm.Opcodes;
 
-import static edu.montana.csci.csci468.bytecode.ByteCodeGenerator.internalNameFor;
+import java.util.ArrayList;
+import java.util.List;
+
+import static edu.montana.csci.csci468.bytecode.ByteCodeGenerator.descriptorFor;
 
 public class AdditiveExpression extends Expression {
 
-    private final Token operator;
-    private final Expression leftHandSide;
-    private final Expression rightHandSide;
+    private static final Handle MAKE_CONCAT_WITH_CONSTANTS = new Handle(Opcodes.H_INVOKESTATIC,
+            "java/lang/invoke/StringConcatFactory", "makeConcatWithConstants",
+            "(Ljava/lang/invoke/MethodHandles$Lookup;Ljava/lang/String;Ljava/lang/invoke/MethodType;Ljava/lang/String;[Ljava/lang/Object;)Ljava/lang/invoke/CallSite;",
+            false);
+    private static final char RECIPE_ARGUMENT = '\u0001';
+    private static final char RECIPE_CONSTANT = '\u0002';
+    // StringConcatFactory takes at most 200 argument slots
+    private static final int MAX_CONCAT_ARGUMENTS = 200;
+
+    private final TokenType operator;
+    private Expression leftHandSide;
+    private Expression rightHandSide;
 
-    public AdditiveExpression(Token operator, Expression leftHandSide, Expression rightHandSide) {
+    public AdditiveExpression(TokenType operator, Expression leftHandSide, Expression rightHandSide) {
         this.leftHandSide = addChild(leftHandSide);
         this.rightHandSide = addChild(rightHandSide);
         this.operator = operator;
@@ -31,18 +43,18 @@ public class AdditiveExpression extends Expression {
         return rightHandSide;
     }
     public boolean isAdd() {
-        return operator.getType() == TokenType.PLUS;
+        return operator == TokenType.PLUS;
     }
 
     @Override
     public void validate(SymbolTable symbolTable) {
         leftHandSide.validate(symbolTable);
         rightHandSide.validate(symbolTable);
-        if (getType().equals(CatscriptType.INT)) {
-            if (!leftHandSide.getType().equals(CatscriptType.INT)) {
+        if (getType() == CatscriptType.INT) {
+            if (leftHandSide.getType() != CatscriptType.INT) {
                 leftHandSide.addError(ErrorType.INCOMPATIBLE_TYPES);
             }
-            if (!rightHandSide.getType().equals(CatscriptType.INT)) {
+            if (rightHandSide.getType() != CatscriptType.INT) {
                 rightHandSide.addError(ErrorType.INCOMPATIBLE_TYPES);
             }
         }
@@ -51,7 +63,7 @@ public class AdditiveExpression extends Expression {
 
     @Override
     public CatscriptType getType() {
-        if (leftHandSide.getType().equals(CatscriptType.STRING) || rightHandSide.getType().equals(CatscriptType.STRING)) {
+        if (leftHandSide.getType() == CatscriptType.STRING || rightHandSide.getType() == CatscriptType.STRING) {
             return CatscriptType.STRING;
         } else {
             return CatscriptType.INT;
@@ -60,7 +72,17 @@ public class AdditiveExpression extends Expression {
 
     @Override
     public String toString() {
-        return super.toString() + "[" + operator.getStringValue() + "]";
+        return super.toString() + "[" + operator.getSymbol() + "]";
+    }
+
+    @Override
+    protected Expression fold() {
+        leftHandSide.foldConstants();
+        rightHandSide.foldConstants();
+        if (leftHandSide.isConstant() && rightHandSide.isConstant()) {
+            return toConstant();
+        }
+        return this;
     }
 
     //==============================================================
@@ -69,9 +91,12 @@ public class AdditiveExpression extends Expression {
 
     @Override
     public Object evaluate(CatscriptRuntime runtime) {
+        if (constant != null) {
+            return constant.evaluate(runtime);
+        }
 //        Object lhsValue = leftHandSide.evaluate(runtime);
 //        Object rhsValue = rightHandSide.evaluate(runtime);
-        if (getType().equals(CatscriptType.STRING)) {
+        if (getType() == CatscriptType.STRING) {
             String lhsStrVal = String.valueOf(leftHandSide.evaluate(runtime));
             String rhsStrVal = String.valueOf(rightHandSide.evaluate(runtime));
             return lhsStrVal + rhsStrVal;
@@ -89,12 +114,16 @@ public class AdditiveExpression extends Expression {
     @Override
     public void transpile(StringBuilder javascript) {
         getLeftHandSide().transpile(javascript);
-        javascript.append(operator.getStringValue());
+        javascript.append(operator.getSymbol());
         getRightHandSide().transpile(javascript);
     }
 
     @Override
     public void compile(ByteCodeGenerator code) {
+        if (constant != null) {
+            constant.compile(code);
+            return;
+        }
         // the AdditiveExpression is used for integer types and also for strings
         // we need to handle these two possibilities
         // Situation examples
@@ -102,7 +131,7 @@ public class AdditiveExpression extends Expression {
         // 2.) var x = 'a' + 'b'
 
         // Are we dealing with integers?
-        if (getType().equals(CatscriptType.INT)) { // yes, we are dealing with ints
+        if (getType() == CatscriptType.INT) { // yes, we are dealing with ints
             // Example: var x = 1 - 1
             // compile left-hand side
             getLeftHandSide().compile(code);
@@ -116,29 +145,68 @@ public class AdditiveExpression extends Expression {
                 // subtraction
                 code.addInstruction(Opcodes.ISUB);
             }
-        } else { // we are dealing with strings, potentially
-            // compile left-hand side
-            getLeftHandSide().compile(code);
-            // is left-hand side an int?
-            if (getLeftHandSide().getType().equals(CatscriptType.INT)) {
-                code.addMethodInstruction(Opcodes.INVOKESTATIC, internalNameFor(String.class), "valueOf", "(I)Ljava/lang/String;");
-            } else {
-                code.addMethodInstruction(Opcodes.INVOKESTATIC, internalNameFor(String.class), "valueOf", "(Ljava/lang/Object;)Ljava/lang/String;");
-            }
-
-            // compile right-hand side
-            getRightHandSide().compile(code);
+        } else {
+            compileConcatenation(code);
+        }
+    }
 
-            if (getRightHandSide().getType().equals(CatscriptType.INT)) {
-                code.addMethodInstruction(Opcodes.INVOKESTATIC, internalNameFor(String.class), "valueOf", "(I)Ljava/lang/String;");
-            } else {
-                code.addMethodInstruction(Opcodes.INVOKESTATIC, internalNameFor(String.class), "valueOf", "(Ljava/lang/Object;)Ljava/lang/String;");
+    // a chain like "a" + x + "b" + y is one string AdditiveExpression per +, it is flattened into
+    // a single invokedynamic so only the result string is allocated; constant operands go
+    // straight into the recipe, everything else is passed as an argument of its own type
+    // (bools as Z, so they print as true/false)
+    private void compileConcatenation(ByteCodeGenerator code) {
+        List<Expression> operands = new ArrayList<>();
+        collectConcatenationOperands(this, operands);
+
+        StringBuilder recipe = new StringBuilder();
+        StringBuilder descriptor = new StringBuilder("(");
+        int argumentCount = 0;
+        for (Expression operand : operands) {
+            if (operand.isConstant()) {
+                String constant = String.valueOf(operand.evaluate(null));
+                if (constant.indexOf(RECIPE_ARGUMENT) < 0 && constant.indexOf(RECIPE_CONSTANT) < 0) {
+                    recipe.append(constant);
+                    continue;
+                }
+            }
+            if (argumentCount == MAX_CONCAT_ARGUMENTS) {
+                // out of argument slots, the string so far becomes the first argument of the next call
+                addConcatenation(code, recipe, descriptor);
+                recipe = new StringBuilder().append(RECIPE_ARGUMENT);
+                descriptor = new StringBuilder("(Ljava/lang/String;");
+                argumentCount = 1;
             }
+            operand.compile(code);
+            recipe.append(RECIPE_ARGUMENT);
+            descriptor.append(descriptorFor(operand.getType()));
+            argumentCount++;
+        }
 
-            code.addMethodInstruction(Opcodes.INVOKEVIRTUAL, internalNameFor(String.class), "concat", "(Ljava/lang/String;)Ljava/lang/String;");
+        if (argumentCount == 0) {
+            code.pushConstantOntoStack(recipe.toString());
+        } else {
+            addConcatenation(code, recipe, descriptor);
+        }
+    }
 
+    private static void collectConcatenationOperands(Expression expression, List<Expression> operands) {
+        Expression inner = expression;
+        if (inner instanceof ParenthesizedExpression) {
+            inner = ((ParenthesizedExpression) inner).getExpression();
         }
+        if (inner instanceof AdditiveExpression && inner.getType() == CatscriptType.STRING) {
+            AdditiveExpression additive = (AdditiveExpression) inner;
+            collectConcatenationOperands(additive.getLeftHandSide(), operands);
+            collectConcatenationOperands(additive.getRightHandSide(), operands);
+        } else {
+            operands.add(expression);
+        }
+    }
 
+    private static void addConcatenation(ByteCodeGenerator code, StringBuilder recipe, StringBuilder descriptor) {
+        descriptor.append(")Ljava/lang/String;");
+        code.addInvokeDynamicInstruction("makeConcatWithConstants", descriptor.toString(),
+                MAKE_CONCAT_WITH_CONSTANTS, recipe.toString());
     }
 
 }
@@ -24,6 +24,11 @@ public class BooleanLiteralExpression extends Expression {
         return CatscriptType.BOOLEAN;
     }
 
+    @Override
+    public boolean isConstant() {
+        return true;
+    }
+
     //==============================================================
     // Implementation
     //==============================================================
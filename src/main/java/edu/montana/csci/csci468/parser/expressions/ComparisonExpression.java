@@ -6,7 +6,7 @@ import edu.montana.csci.csci468.parser.CatscriptType;
 import edu.montana.csci.csci468.parser.ErrorType;
 import edu.montana.csci.csci468.parser.ParseError;
 import edu.montana.csci.csci468.parser.SymbolTable;
-import edu.montana.csci.csci468.tokenizer.Token;
+import edu.montana.csci.csci468.tokenizer.TokenType;
 import org.objectweb.asm.Label;
 import org.objectweb.asm.Opcodes;
 
@@ -14,11 +14,11 @@ import static edu.montana.csci.csci468.tokenizer.TokenType.*;
 
 public class ComparisonExpression extends Expression {
 
-    private final Token operator;
-    private final Expression leftHandSide;
-    private final Expression rightHandSide;
+    private final TokenType operator;
+    private Expression leftHandSide;
+    private Expression rightHandSide;
 
-    public ComparisonExpression(Token operator, Expression leftHandSide, Expression rightHandSide) {
+    public ComparisonExpression(TokenType operator, Expression leftHandSide, Expression rightHandSide) {
         this.leftHandSide = addChild(leftHandSide);
         this.rightHandSide = addChild(rightHandSide);
         this.operator = operator;
@@ -34,30 +34,30 @@ public class ComparisonExpression extends Expression {
 
     @Override
     public String toString() {
-        return super.toString() + "[" + operator.getStringValue() + "]";
+        return super.toString() + "[" + operator.getSymbol() + "]";
     }
 
     public boolean isLessThan() {
-        return operator.getType().equals(LESS);
+        return operator.equals(LESS);
     }
     public boolean isLessThanOrEqual() {
-        return operator.getType().equals(LESS_EQUAL);
+        return operator.equals(LESS_EQUAL);
     }
     public boolean isGreaterThanOrEqual() {
-        return operator.getType().equals(GREATER_EQUAL);
+        return operator.equals(GREATER_EQUAL);
     }
     public boolean isGreater() {
-        return operator.getType().equals(GREATER);
+        return operator.equals(GREATER);
     }
 
     @Override
     public void validate(SymbolTable symbolTable) {
         leftHandSide.validate(symbolTable);
         rightHandSide.validate(symbolTable);
-        if (!leftHandSide.getType().equals(CatscriptType.INT)) {
+        if (leftHandSide.getType() != CatscriptType.INT) {
             leftHandSide.addError(ErrorType.INCOMPATIBLE_TYPES);
         }
-        if (!rightHandSide.getType().equals(CatscriptType.INT)) {
+        if (rightHandSide.getType() != CatscriptType.INT) {
             rightHandSide.addError(ErrorType.INCOMPATIBLE_TYPES);
         }
     }
@@ -67,21 +67,34 @@ public class ComparisonExpression extends Expression {
         return CatscriptType.BOOLEAN;
     }
 
+    @Override
+    protected Expression fold() {
+        leftHandSide.foldConstants();
+        rightHandSide.foldConstants();
+        if (leftHandSide.isConstant() && rightHandSide.isConstant()) {
+            return toConstant();
+        }
+        return this;
+    }
+
     //==============================================================
     // Implementation
     //==============================================================
 
     @Override
     public Object evaluate(CatscriptRuntime runtime) {
+        if (constant != null) {
+            return constant.evaluate(runtime);
+        }
         Integer lhs = (Integer) leftHandSide.evaluate(runtime);
         Integer rhs = (Integer) rightHandSide.evaluate(runtime);
-        if (operator.getType().equals(GREATER)) {
+        if (operator.equals(GREATER)) {
             return lhs > rhs;
-        } else if (operator.getType().equals(GREATER_EQUAL)) {
+        } else if (operator.equals(GREATER_EQUAL)) {
             return lhs >= rhs;
-        } else if (operator.getType().equals(LESS)) {
+        } else if (operator.equals(LESS)) {
             return lhs < rhs;
-        } else if (operator.getType().equals(LESS_EQUAL)) {
+        } else if (operator.equals(LESS_EQUAL)) {
             return lhs <= rhs;
         }
         return super.evaluate(runtime);
@@ -94,6 +107,10 @@ public class ComparisonExpression extends Expression {
 
     @Override
     public void compile(ByteCodeGenerator code) {
+        if (constant != null) {
+            constant.compile(code);
+            return;
+        }
         // create labels
         Label setToFalse = new Label();
         Label end = new Label();
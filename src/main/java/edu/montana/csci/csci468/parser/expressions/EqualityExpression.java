@@ -4,18 +4,17 @@ import edu.montana.csci.csci468.bytecode.ByteCodeGenerator;
 import edu.montana.csci.csci468.eval.CatscriptRuntime;
 import edu.montana.csci.csci468.parser.CatscriptType;
 import edu.montana.csci.csci468.parser.SymbolTable;
-import edu.montana.csci.csci468.tokenizer.Token;
 import edu.montana.csci.csci468.tokenizer.TokenType;
 import org.objectweb.asm.Label;
 import org.objectweb.asm.Opcodes;
 
 public class EqualityExpression extends Expression {
 
-    private final Token operator;
-    private final Expression leftHandSide;
-    private final Expression rightHandSide;
+    private final TokenType operator;
+    private Expression leftHandSide;
+    private Expression rightHandSide;
 
-    public EqualityExpression(Token operator, Expression leftHandSide, Expression rightHandSide) {
+    public EqualityExpression(TokenType operator, Expression leftHandSide, Expression rightHandSide) {
         this.leftHandSide = addChild(leftHandSide);
         this.rightHandSide = addChild(rightHandSide);
         this.operator = operator;
@@ -31,11 +30,11 @@ public class EqualityExpression extends Expression {
 
     @Override
     public String toString() {
-        return super.toString() + "[" + operator.getStringValue() + "]";
+        return super.toString() + "[" + operator.getSymbol() + "]";
     }
 
     public boolean isEqual() {
-        return operator.getType().equals(TokenType.EQUAL_EQUAL);
+        return operator.equals(TokenType.EQUAL_EQUAL);
     }
 
     @Override
@@ -49,12 +48,28 @@ public class EqualityExpression extends Expression {
         return CatscriptType.BOOLEAN;
     }
 
+    // equality is by reference; string literals are distinct objects to the evaluator but a
+    // single interned constant in bytecode, so comparisons of strings are not folded
+    @Override
+    protected Expression fold() {
+        leftHandSide.foldConstants();
+        rightHandSide.foldConstants();
+        if (leftHandSide.isConstant() && rightHandSide.isConstant() &&
+                leftHandSide.getType() != CatscriptType.STRING && rightHandSide.getType() != CatscriptType.STRING) {
+            return toConstant();
+        }
+        return this;
+    }
+
     //==============================================================
     // Implementation
     //==============================================================
 
     @Override
     public Object evaluate(CatscriptRuntime runtime) {
+        if (constant != null) {
+            return constant.evaluate(runtime);
+        }
         Boolean exprVal = (Boolean) (getLeftHandSide().evaluate(runtime) == getRightHandSide().evaluate(runtime)) ? true : false;
         return isEqual() == exprVal;
     }
@@ -66,6 +81,10 @@ public class EqualityExpression extends Expression {
 
     @Override
     public void compile(ByteCodeGenerator code) {
+        if (constant != null) {
+            constant.compile(code);
+            return;
+        }
         Label goToFalse = new Label();
         Label end = new Label();
 
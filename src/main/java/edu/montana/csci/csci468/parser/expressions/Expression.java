@@ -22,4 +22,62 @@ public abstract class Expression extends ParseElement {
     }
 
     public abstract CatscriptType getType();
+
+    //==============================================================
+    // Constant folding
+    //==============================================================
+
+    // Folding marks rather than replaces, so the tree stays as it was parsed and verified
+    // (a reparse may verify it again).  A folded expression keeps the literal it comes
+    // down to, and evaluates and compiles as that literal.
+    protected Expression constant;
+
+    // folds the operands and, when the whole expression is constant, keeps its literal
+    public void foldConstants() {
+        Expression folded = fold();
+        if (folded != this) {
+            constant = folded;
+        }
+    }
+
+    // folds constant operands and returns the expression this one comes down to, a literal
+    // if the whole expression turned out constant
+    protected Expression fold() {
+        return this;
+    }
+
+    public boolean isConstant() {
+        return constant != null;
+    }
+
+    @Override
+    protected void resetRuntimeState() {
+        constant = null;
+        super.resetRuntimeState();
+    }
+
+    // this expression, evaluated now, as a literal.  Anything that fails to evaluate
+    // (division by zero) is left alone so it fails at runtime as before
+    protected Expression toConstant() {
+        Object value;
+        try {
+            value = evaluate(null);
+        } catch (RuntimeException e) {
+            return this;
+        }
+        Expression literal;
+        if (value instanceof Integer) {
+            literal = new IntegerLiteralExpression(value.toString());
+        } else if (value instanceof Boolean) {
+            literal = new BooleanLiteralExpression((Boolean) value);
+        } else if (value instanceof String) {
+            literal = new StringLiteralExpression((String) value);
+        } else {
+            return this;
+        }
+        literal.parent = this;
+        literal.setStart(this);
+        literal.setEnd(this);
+        return literal;
+    }
 }
@@ -6,17 +6,16 @@ import edu.montana.csci.csci468.parser.CatscriptType;
 import edu.montana.csci.csci468.parser.ErrorType;
 import edu.montana.csci.csci468.parser.ParseError;
 import edu.montana.csci.csci468.parser.SymbolTable;
-import edu.montana.csci.csci468.tokenizer.Token;
 import edu.montana.csci.csci468.tokenizer.TokenType;
 import org.objectweb.asm.Opcodes;
 
 public class FactorExpression extends Expression {
 
-    private final Token operator;
-    private final Expression leftHandSide;
-    private final Expression rightHandSide;
+    private final TokenType operator;
+    private Expression leftHandSide;
+    private Expression rightHandSide;
 
-    public FactorExpression(Token operator, Expression leftHandSide, Expression rightHandSide) {
+    public FactorExpression(TokenType operator, Expression leftHandSide, Expression rightHandSide) {
         this.leftHandSide = addChild(leftHandSide);
         this.rightHandSide = addChild(rightHandSide);
         this.operator = operator;
@@ -31,22 +30,22 @@ public class FactorExpression extends Expression {
     }
 
     public boolean isMultiply() {
-        return operator.getType() == TokenType.STAR;
+        return operator == TokenType.STAR;
     }
 
     @Override
     public String toString() {
-        return super.toString() + "[" + operator.getStringValue() + "]";
+        return super.toString() + "[" + operator.getSymbol() + "]";
     }
 
     @Override
     public void validate(SymbolTable symbolTable) {
         leftHandSide.validate(symbolTable);
         rightHandSide.validate(symbolTable);
-        if (!leftHandSide.getType().equals(CatscriptType.INT)) {
+        if (leftHandSide.getType() != CatscriptType.INT) {
             leftHandSide.addError(ErrorType.INCOMPATIBLE_TYPES);
         }
-        if (!rightHandSide.getType().equals(CatscriptType.INT)) {
+        if (rightHandSide.getType() != CatscriptType.INT) {
             rightHandSide.addError(ErrorType.INCOMPATIBLE_TYPES);
         }
     }
@@ -56,18 +55,31 @@ public class FactorExpression extends Expression {
         return CatscriptType.INT;
     }
 
+    @Override
+    protected Expression fold() {
+        leftHandSide.foldConstants();
+        rightHandSide.foldConstants();
+        if (leftHandSide.isConstant() && rightHandSide.isConstant()) {
+            return toConstant();
+        }
+        return this;
+    }
+
     //==============================================================
     // Implementation
     //==============================================================
 
     @Override
     public Object evaluate(CatscriptRuntime runtime) {
+        if (constant != null) {
+            return constant.evaluate(runtime);
+        }
         Integer lhs = (Integer) leftHandSide.evaluate(runtime);
         Integer rhs = (Integer) rightHandSide.evaluate(runtime);
         Integer answer = 0;
         if (isMultiply()) {
             answer = lhs * rhs;
-        } else if (operator.getType() == TokenType.SLASH) {
+        } else if (operator == TokenType.SLASH) {
             answer = lhs / rhs;
         }
         return answer;
@@ -80,6 +92,10 @@ public class FactorExpression extends Expression {
 
     @Override
     public void compile(ByteCodeGenerator code) {
+        if (constant != null) {
+            constant.compile(code);
+            return;
+        }
         // compile right-hand side
         getLeftHandSide().compile(code);
         // compile left-hand side
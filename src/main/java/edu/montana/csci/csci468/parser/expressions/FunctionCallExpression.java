@@ -10,20 +10,18 @@ import edu.montana.csci.csci468.parser.statements.FunctionDefinitionStatement;
 import org.objectweb.asm.Opcodes;
 
 import java.util.ArrayList;
-import java.util.LinkedList;
 import java.util.List;
 
-import static edu.montana.csci.csci468.bytecode.ByteCodeGenerator.internalNameFor;
-
 public class FunctionCallExpression extends Expression {
     private final String name;
     List<Expression> arguments;
     private CatscriptType type;
 
     private String funcDefinition;
+    private FunctionDefinitionStatement function;
 
     public FunctionCallExpression(String functionName, List<Expression> arguments) {
-        this.arguments = new LinkedList<>();
+        this.arguments = new ArrayList<>(arguments.size());
         for (Expression value : arguments) {
             this.arguments.add(addChild(value));
         }
@@ -50,6 +48,7 @@ public class FunctionCallExpression extends Expression {
             addError(ErrorType.UNKNOWN_NAME);
             type = CatscriptType.OBJECT;
         } else {
+            this.function = function;
             type = function.getType();
             if (arguments.size() != function.getParameterCount()) {
                 addError(ErrorType.ARG_MISMATCH);
@@ -63,10 +62,18 @@ public class FunctionCallExpression extends Expression {
                     }
                 }
             }
+            funcDefinition = function.getDescriptor();
         }
+    }
 
-        funcDefinition = function.getDescriptor();
+    public FunctionDefinitionStatement getFunction() {
+        return function;
+    }
 
+    @Override
+    protected Expression fold() {
+        arguments.forEach(Expression::foldConstants);
+        return this;
     }
 
     //==============================================================
@@ -75,13 +82,12 @@ public class FunctionCallExpression extends Expression {
 
     @Override
     public Object evaluate(CatscriptRuntime runtime) {
-        List<Object> fncArgs = new ArrayList<>();
-        for (Expression expr : arguments) {
-            fncArgs.add(expr.evaluate(runtime));
+        // arguments are evaluated in the caller's frame, straight into the callee's parameter slots
+        Object[] frame = function.allocateFrame(runtime);
+        for (int i = 0; i < arguments.size(); i++) {
+            frame[i] = arguments.get(i).evaluate(runtime);
         }
-        FunctionDefinitionStatement fnc = getProgram().getFunction(name);
-        return fnc.invoke(runtime, fncArgs);
-
+        return function.invoke(runtime, frame);
     }
 
     @Override
@@ -90,38 +96,21 @@ public class FunctionCallExpression extends Expression {
     }
 
     public void compile(ByteCodeGenerator code) {
-        // build the descriptor
-        String descriptor = "(";
-        // iterate over arguments
-        for (Expression argumentExpression : getArguments()) {
-            if (argumentExpression.getType().equals(CatscriptType.BOOLEAN) || argumentExpression.getType().equals(CatscriptType.INT)) {
-                descriptor = descriptor + "I";
-            } else {
-                descriptor = descriptor + "L" + internalNameFor(getType().getJavaType()) + ";";
-            }
-        }
-        descriptor = descriptor + ")";
-        if (getType().equals(CatscriptType.VOID)) {
-            descriptor = descriptor + "V";
-        } else if (type.equals(CatscriptType.BOOLEAN) || type.equals(CatscriptType.INT)) {
-            descriptor = descriptor + "I";
-        } else {
-            descriptor = descriptor + "L" + internalNameFor(getType().getJavaType()) + ";";
-        }
-
-
         code.addVarInstruction(Opcodes.ALOAD, 0);
 
-        for (Expression arg : getArguments()) {
-            arg.compile(code);
-            if(!descriptor.equals(funcDefinition)) {
-                box(code, arg.getType());
+        // ints and bools are passed as they are, anything else as an object
+        for (int i = 0; i < arguments.size(); i++) {
+            Expression argument = arguments.get(i);
+            argument.compile(code);
+            CatscriptType parameterType = function.getParameterType(i);
+            if (parameterType != CatscriptType.INT && parameterType != CatscriptType.BOOLEAN) {
+                box(code, argument.getType());
             }
         }
 
         code.addMethodInstruction(Opcodes.INVOKEVIRTUAL,
                 code.getProgramInternalName(),
-                getName(),
+                code.memberNameFor(getName()),
                 funcDefinition);
     }
 
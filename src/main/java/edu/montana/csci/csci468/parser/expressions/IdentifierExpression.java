@@ -8,11 +8,13 @@ import edu.montana.csci.csci468.parser.ParseError;
 import edu.montana.csci.csci468.parser.SymbolTable;
 import org.objectweb.asm.Opcodes;
 
-import static edu.montana.csci.csci468.bytecode.ByteCodeGenerator.internalNameFor;
+import static edu.montana.csci.csci468.bytecode.ByteCodeGenerator.descriptorFor;
 
 public class IdentifierExpression extends Expression {
     private final String name;
     private CatscriptType type;
+    private int depth;
+    private int slot;
 
     public IdentifierExpression(String value) {
         this.name = value;
@@ -22,6 +24,11 @@ public class IdentifierExpression extends Expression {
         return name;
     }
 
+    // 0 for the current frame, otherwise the global frame, see CatscriptRuntime
+    public int getDepth() {
+        return depth;
+    }
+
     @Override
     public CatscriptType getType() {
         return type;
@@ -34,6 +41,8 @@ public class IdentifierExpression extends Expression {
             addError(ErrorType.UNKNOWN_NAME);
         } else {
             this.type = type;
+            this.depth = symbolTable.getSymbolDepth(getName());
+            this.slot = symbolTable.getSymbolSlot(getName());
         }
     }
 
@@ -43,7 +52,7 @@ public class IdentifierExpression extends Expression {
 
     @Override
     public Object evaluate(CatscriptRuntime runtime) {
-        return runtime.getValue(name);
+        return runtime.getValue(depth, slot);
     }
 
     @Override
@@ -59,22 +68,14 @@ public class IdentifierExpression extends Expression {
         // does it exist?
         if (localSlot != null) { // yes! there is a local storage slot
             // local variable
-            if (getType().equals(CatscriptType.INT) || getType().equals(CatscriptType.BOOLEAN)) {
+            if (getType() == CatscriptType.INT || getType() == CatscriptType.BOOLEAN) {
                 code.addVarInstruction(Opcodes.ILOAD, localSlot);
             } else {
                 code.addVarInstruction(Opcodes.ALOAD, localSlot);
             }
         } else {
             // global variable
-            code.addVarInstruction(Opcodes.ALOAD, 0);
-            String descName = "I";
-
-            if (!getType().equals(CatscriptType.INT) && !getType().equals(CatscriptType.BOOLEAN)) {
-                descName = "L" + internalNameFor(getType().getJavaType()) + ";";
-            }
-
-            code.addFieldInstruction(Opcodes.GETFIELD, getName(), descName, code.getProgramInternalName());
-
+            code.loadGlobal(getName(), descriptorFor(getType()));
         }
     }
 
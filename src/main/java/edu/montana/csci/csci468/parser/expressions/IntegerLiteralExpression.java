@@ -29,6 +29,11 @@ public class IntegerLiteralExpression extends Expression {
         return CatscriptType.INT;
     }
 
+    @Override
+    public boolean isConstant() {
+        return true;
+    }
+
     //==============================================================
     // Implementation
     //==============================================================
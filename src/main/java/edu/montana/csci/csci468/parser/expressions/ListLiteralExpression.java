@@ -1,7 +1,9 @@
 package edu.montana.csci.csci468.parser.expressions;
 
 import edu.montana.csci.csci468.bytecode.ByteCodeGenerator;
+import edu.montana.csci.csci468.eval.BooleanList;
 import edu.montana.csci.csci468.eval.CatscriptRuntime;
+import edu.montana.csci.csci468.eval.IntList;
 import edu.montana.csci.csci468.parser.CatscriptType;
 import edu.montana.csci.csci468.parser.SymbolTable;
 import org.objectweb.asm.Opcodes;
@@ -15,6 +17,8 @@ import static edu.montana.csci.csci468.bytecode.ByteCodeGenerator.internalNameFo
 public class ListLiteralExpression extends Expression {
     List<Expression> values;
     private CatscriptType type;
+    // INT or BOOLEAN when every element is one, the list is then stored unboxed
+    private CatscriptType primitiveType;
 
     public ListLiteralExpression(List<Expression> values) {
         this.values = new LinkedList<>();
@@ -38,6 +42,12 @@ public class ListLiteralExpression extends Expression {
         } else {
             type = CatscriptType.getListType(CatscriptType.OBJECT);
         }
+        primitiveType = null;
+        if (values.size() > 0 && values.stream().allMatch(value -> value.getType() == CatscriptType.INT)) {
+            primitiveType = CatscriptType.INT;
+        } else if (values.size() > 0 && values.stream().allMatch(value -> value.getType() == CatscriptType.BOOLEAN)) {
+            primitiveType = CatscriptType.BOOLEAN;
+        }
     }
 
     @Override
@@ -45,12 +55,31 @@ public class ListLiteralExpression extends Expression {
         return type;
     }
 
+    @Override
+    protected Expression fold() {
+        values.forEach(Expression::foldConstants);
+        return this;
+    }
+
     //==============================================================
     // Implementation
     //==============================================================
 
     @Override
     public Object evaluate(CatscriptRuntime runtime) {
+        if (primitiveType == CatscriptType.INT) {
+            IntList intList = new IntList(values.size());
+            for (Expression expr : values) {
+                intList.addInt((Integer) expr.evaluate(runtime));
+            }
+            return intList;
+        } else if (primitiveType == CatscriptType.BOOLEAN) {
+            BooleanList booleanList = new BooleanList(values.size());
+            for (Expression expr : values) {
+                booleanList.addBoolean((Boolean) expr.evaluate(runtime));
+            }
+            return booleanList;
+        }
         ArrayList<Object> expressionList = new ArrayList<>();
         for (Expression expr : values) {
             expressionList.add(expr.evaluate(runtime));
@@ -65,13 +94,18 @@ public class ListLiteralExpression extends Expression {
 
     @Override
     public void compile(ByteCodeGenerator code) {
-        // Add new opcode
-        String linkedListInternalClassName = internalNameFor(LinkedList.class);
-        code.addTypeInstruction(Opcodes.NEW, linkedListInternalClassName);
+        if (primitiveType != null) {
+            compilePrimitiveList(code);
+            return;
+        }
+        // presized ArrayList, so loops over it can use get(i)
+        String arrayListInternalClassName = internalNameFor(ArrayList.class);
+        code.addTypeInstruction(Opcodes.NEW, arrayListInternalClassName);
         // add dup instructions - duplicate the value on top of the stack
         code.addInstruction(Opcodes.DUP);
+        code.pushConstantOntoStack(values.size());
         // add invoke special - invoke instance method on object objectref and puts the result on the stack
-        code.addMethodInstruction(Opcodes.INVOKESPECIAL, linkedListInternalClassName,"<init>","()V");
+        code.addMethodInstruction(Opcodes.INVOKESPECIAL, arrayListInternalClassName,"<init>","(I)V");
         // loop expression values
         for (Expression value : values) {
             // add dup instruction
@@ -79,10 +113,28 @@ public class ListLiteralExpression extends Expression {
             // compile expression value
             value.compile(code);
             box(code, value.getType());
-            code.addMethodInstruction(Opcodes.INVOKEVIRTUAL, linkedListInternalClassName, "add", "(Ljava/lang/Object;)Z" );
+            code.addMethodInstruction(Opcodes.INVOKEVIRTUAL, arrayListInternalClassName, "add", "(Ljava/lang/Object;)Z" );
             // add pop instruction
             code.addInstruction(Opcodes.POP);
         }
     }
 
+    private void compilePrimitiveList(ByteCodeGenerator code) {
+        boolean ints = primitiveType == CatscriptType.INT;
+        String listInternalClassName = internalNameFor(ints ? IntList.class : BooleanList.class);
+        code.addTypeInstruction(Opcodes.NEW, listInternalClassName);
+        code.addInstruction(Opcodes.DUP);
+        code.pushConstantOntoStack(values.size());
+        code.addMethodInstruction(Opcodes.INVOKESPECIAL, listInternalClassName, "<init>", "(I)V");
+        for (Expression value : values) {
+            code.addInstruction(Opcodes.DUP);
+            value.compile(code);
+            if (ints) {
+                code.addMethodInstruction(Opcodes.INVOKEVIRTUAL, listInternalClassName, "addInt", "(I)V");
+            } else {
+                code.addMethodInstruction(Opcodes.INVOKEVIRTUAL, listInternalClassName, "addBoolean", "(Z)V");
+            }
+        }
+    }
+
 }
@@ -15,6 +15,11 @@ public class NullLiteralExpression extends Expression {
     @Override
     public void validate(SymbolTable symbolTable) {}
 
+    @Override
+    public boolean isConstant() {
+        return true;
+    }
+
     //==============================================================
     // Implementation
     //==============================================================
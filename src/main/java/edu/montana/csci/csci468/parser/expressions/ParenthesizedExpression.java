@@ -9,7 +9,7 @@ import edu.montana.csci.csci468.tokenizer.TokenType;
 
 public class ParenthesizedExpression extends Expression {
 
-    private final Expression expression;
+    private Expression expression;
 
     public ParenthesizedExpression(Expression expression) {
         this.expression = addChild(expression);
@@ -29,6 +29,12 @@ public class ParenthesizedExpression extends Expression {
         return expression.getType();
     }
 
+    @Override
+    protected Expression fold() {
+        expression.foldConstants();
+        return expression.isConstant() ? expression : this;
+    }
+
     //==============================================================
     // Implementation
     //==============================================================
@@ -24,6 +24,11 @@ public class StringLiteralExpression extends Expression {
     @Override
     public void validate(SymbolTable symbolTable) {}
 
+    @Override
+    public boolean isConstant() {
+        return true;
+    }
+
     //==============================================================
     // Implementation
     //==============================================================
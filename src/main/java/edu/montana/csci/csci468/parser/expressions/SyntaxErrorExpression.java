@@ -5,12 +5,12 @@ import edu.montana.csci.csci468.eval.CatscriptRuntime;
 import edu.montana.csci.csci468.parser.CatscriptType;
 import edu.montana.csci.csci468.parser.ErrorType;
 import edu.montana.csci.csci468.parser.SymbolTable;
-import edu.montana.csci.csci468.tokenizer.Token;
+import edu.montana.csci.csci468.tokenizer.TokenList;
 
 public class SyntaxErrorExpression extends Expression {
 
-    public SyntaxErrorExpression(Token consumeToken) {
-        setToken(consumeToken);
+    public SyntaxErrorExpression(TokenList tokens, int consumeToken) {
+        setToken(tokens, consumeToken);
         addError(ErrorType.UNEXPECTED_TOKEN);
     }
 
@@ -6,16 +6,15 @@ import edu.montana.csci.csci468.parser.CatscriptType;
 import edu.montana.csci.csci468.parser.ErrorType;
 import edu.montana.csci.csci468.parser.ParseError;
 import edu.montana.csci.csci468.parser.SymbolTable;
-import edu.montana.csci.csci468.tokenizer.Token;
 import edu.montana.csci.csci468.tokenizer.TokenType;
 import org.objectweb.asm.Opcodes;
 
 public class UnaryExpression extends Expression {
 
-    private final Token operator;
-    private final Expression rightHandSide;
+    private final TokenType operator;
+    private Expression rightHandSide;
 
-    public UnaryExpression(Token operator, Expression rightHandSide) {
+    public UnaryExpression(TokenType operator, Expression rightHandSide) {
         this.rightHandSide = addChild(rightHandSide);
         this.operator = operator;
     }
@@ -25,7 +24,7 @@ public class UnaryExpression extends Expression {
     }
 
     public boolean isMinus() {
-        return operator.getType().equals(TokenType.MINUS);
+        return operator.equals(TokenType.MINUS);
     }
 
     public boolean isNot() {
@@ -34,15 +33,15 @@ public class UnaryExpression extends Expression {
 
     @Override
     public String toString() {
-        return super.toString() + "[" + operator.getStringValue() + "]";
+        return super.toString() + "[" + operator.getSymbol() + "]";
     }
 
     @Override
     public void validate(SymbolTable symbolTable) {
         rightHandSide.validate(symbolTable);
-        if (isNot() && !rightHandSide.getType().equals(CatscriptType.BOOLEAN)) {
+        if (isNot() && rightHandSide.getType() != CatscriptType.BOOLEAN) {
             addError(ErrorType.INCOMPATIBLE_TYPES);
-        } else if(isMinus() && !rightHandSide.getType().equals(CatscriptType.INT)) {
+        } else if(isMinus() && rightHandSide.getType() != CatscriptType.INT) {
             addError(ErrorType.INCOMPATIBLE_TYPES);
         }
     }
@@ -56,12 +55,24 @@ public class UnaryExpression extends Expression {
         }
     }
 
+    @Override
+    protected Expression fold() {
+        rightHandSide.foldConstants();
+        if (rightHandSide.isConstant()) {
+            return toConstant();
+        }
+        return this;
+    }
+
     //==============================================================
     // Implementation
     //==============================================================
 
     @Override
     public Object evaluate(CatscriptRuntime runtime) {
+        if (constant != null) {
+            return constant.evaluate(runtime);
+        }
         Object rhsValue = getRightHandSide().evaluate(runtime);
         if (this.isMinus()) {
             return -1 * (Integer) rhsValue;
@@ -77,6 +88,10 @@ public class UnaryExpression extends Expression {
 
     @Override
     public void compile(ByteCodeGenerator code) {
+        if (constant != null) {
+            constant.compile(code);
+            return;
+        }
         // compile right-hand side
         getRightHandSide().compile(code);
         // is minus?
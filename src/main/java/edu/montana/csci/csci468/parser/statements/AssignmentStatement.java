@@ -11,6 +11,8 @@ import edu.montana.csci.csci468.parser.expressions.Expression;
 public class AssignmentStatement extends Statement {
     private Expression expression;
     private String variableName;
+    private int depth;
+    private int slot;
 
     public Expression getExpression() {
         return expression;
@@ -28,6 +30,10 @@ public class AssignmentStatement extends Statement {
         this.variableName = variableName;
     }
 
+    public int getDepth() {
+        return depth;
+    }
+
     @Override
     public void validate(SymbolTable symbolTable) {
         expression.validate(symbolTable);
@@ -38,15 +44,22 @@ public class AssignmentStatement extends Statement {
             if (!symbolType.isAssignableFrom(expression.getType())) {
                 addError(ErrorType.INCOMPATIBLE_TYPES);
             }
+            depth = symbolTable.getSymbolDepth(getVariableName());
+            slot = symbolTable.getSymbolSlot(getVariableName());
         }
     }
 
+    @Override
+    public void foldConstants() {
+        expression.foldConstants();
+    }
+
     //==============================================================
     // Implementation
     //==============================================================
     @Override
     public void execute(CatscriptRuntime runtime) {
-        runtime.setValue(variableName, expression.evaluate(runtime));
+        runtime.setValue(depth, slot, expression.evaluate(runtime));
     }
 
     @Override
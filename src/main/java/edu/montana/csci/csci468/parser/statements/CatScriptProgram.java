@@ -3,12 +3,15 @@ package edu.montana.csci.csci468.parser.statements;
 import edu.montana.csci.csci468.bytecode.ByteCodeGenerator;
 import edu.montana.csci.csci468.eval.CatscriptRuntime;
 import edu.montana.csci.csci468.parser.CatscriptType;
+import edu.montana.csci.csci468.parser.ParseElement;
 import edu.montana.csci.csci468.parser.SymbolTable;
 import edu.montana.csci.csci468.parser.expressions.Expression;
+import edu.montana.csci.csci468.tokenizer.Token;
+import edu.montana.csci.csci468.tokenizer.TokenList;
 import org.objectweb.asm.Opcodes;
 
+import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 
@@ -16,12 +19,31 @@ import static edu.montana.csci.csci468.bytecode.ByteCodeGenerator.internalNameFo
 
 public class CatScriptProgram extends Statement {
 
+    // -Dcatscript.optimize=false turns off constant folding, e.g. when debugging the backends
+    private static final boolean OPTIMIZE_BY_DEFAULT = Boolean.parseBoolean(System.getProperty("catscript.optimize", "true"));
+    // -Dcatscript.compileThreshold=N compiles functions to bytecode once they have been called
+    // and looped N times in total; off (-1) by default
+    private static final int COMPILE_THRESHOLD_DEFAULT = Integer.getInteger("catscript.compileThreshold", -1);
+
     private StringBuffer output = new StringBuffer();
-    private List<Statement> statements = new LinkedList<>();
+    // set on programs compiled on the side, see printFor
+    private ParseElement printsFor;
+    // indexed by reparse, so not a linked list
+    private List<Statement> statements = new ArrayList<>();
     private Map<String, FunctionDefinitionStatement> functions = new HashMap<>();
     private Expression expression;
+    private int frameSize;
+    // what the program was parsed from, so it can be reparsed after an edit
+    private TokenList tokens;
+    private boolean optimize = OPTIMIZE_BY_DEFAULT;
+    private boolean optimized;
+    private int compileThreshold = COMPILE_THRESHOLD_DEFAULT;
 
     public void print(Object v) {
+        if (printsFor != null) {
+            printsFor.getProgram().print(v);
+            return;
+        }
         output.append(v).append("\n");
     }
 
@@ -29,6 +51,13 @@ public class CatScriptProgram extends Statement {
         return output.toString();
     }
 
+    // prints from this program go to whichever program the element belongs to at the time,
+    // used when code compiled on the side runs on behalf of an interpreted program (which a
+    // reparse may replace, see CatScriptParser.reparse)
+    public void printFor(ParseElement element) {
+        this.printsFor = element;
+    }
+
     public void addStatement(Statement child) {
         Statement statement = addChild(child);
         statements.add(statement);
@@ -50,6 +79,24 @@ public class CatScriptProgram extends Statement {
         return statements;
     }
 
+    public TokenList getTokens() {
+        return tokens;
+    }
+
+    public void setTokens(TokenList tokens) {
+        this.tokens = tokens;
+    }
+
+    // A program starts where its first statement does.  After a reparse that statement may
+    // have been kept from an earlier version of the source, see CatScriptParser.reparse.
+    @Override
+    public Token getStart() {
+        if (expression == null && !statements.isEmpty()) {
+            return statements.get(0).getStart();
+        }
+        return super.getStart();
+    }
+
     public boolean isExpression() {
         return expression != null;
     }
@@ -67,10 +114,38 @@ public class CatScriptProgram extends Statement {
                 statement.validate(symbolTable);
             }
         }
+        frameSize = symbolTable.getFrameSize();
+    }
+
+    public void setOptimize(boolean optimize) {
+        this.optimize = optimize;
+    }
+
+    // Folds constant expressions into literals, which execute and compile then use in their
+    // place (see Expression.foldConstants); the tree itself is left as it was verified.
+    // Runs (once) after verify, before the program is executed or compiled.
+    public void optimize() {
+        if (!optimize || optimized) {
+            return;
+        }
+        optimized = true;
+        if (expression != null) {
+            expression.foldConstants();
+        } else {
+            foldConstants(statements);
+        }
+    }
+
+    // a negative threshold keeps every function in the interpreter
+    public void setCompileThreshold(int compileThreshold) {
+        this.compileThreshold = compileThreshold;
     }
 
     public void execute() {
-        execute(new CatscriptRuntime());
+        optimize();
+        CatscriptRuntime runtime = new CatscriptRuntime(frameSize);
+        runtime.setCompileThreshold(compileThreshold);
+        execute(runtime);
     }
 
     //==============================================================
@@ -78,6 +153,7 @@ public class CatScriptProgram extends Statement {
     //==============================================================
     @Override
     public void execute(CatscriptRuntime runtime) {
+        runtime.reserveGlobalSlots(frameSize);
         if (expression != null) {
             print(expression.evaluate(runtime));
         } else {
@@ -111,6 +187,7 @@ public class CatScriptProgram extends Statement {
             code.addInstruction(Opcodes.RETURN);
         } else {
             for (Statement statement : statements) {
+                code.splitMethodIfLong();
                 statement.compile(code);
             }
             code.addInstruction(Opcodes.RETURN);
@@ -1,7 +1,9 @@
 package edu.montana.csci.csci468.parser.statements;
 
 import edu.montana.csci.csci468.bytecode.ByteCodeGenerator;
+import edu.montana.csci.csci468.eval.BooleanList;
 import edu.montana.csci.csci468.eval.CatscriptRuntime;
+import edu.montana.csci.csci468.eval.IntList;
 import edu.montana.csci.csci468.parser.CatscriptType;
 import edu.montana.csci.csci468.parser.ErrorType;
 import edu.montana.csci.csci468.parser.ParseError;
@@ -10,10 +12,10 @@ import edu.montana.csci.csci468.parser.expressions.Expression;
 import org.objectweb.asm.Label;
 import org.objectweb.asm.Opcodes;
 
-import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.RandomAccess;
 
 import static edu.montana.csci.csci468.bytecode.ByteCodeGenerator.internalNameFor;
 
@@ -21,6 +23,8 @@ public class ForStatement extends Statement {
     private Expression expression;
     private String variableName;
     private List<Statement> body;
+    private int slot;
+    private FunctionDefinitionStatement function;
 
     public void setExpression(Expression expression) {
         this.expression = addChild(expression);
@@ -51,6 +55,7 @@ public class ForStatement extends Statement {
 
     @Override
     public void validate(SymbolTable symbolTable) {
+        function = getFunction();
         symbolTable.pushScope();
         if (symbolTable.hasSymbol(variableName)) {
             addError(ErrorType.DUPLICATE_NAME);
@@ -60,9 +65,10 @@ public class ForStatement extends Statement {
             if (type instanceof CatscriptType.ListType) {
                 symbolTable.registerSymbol(variableName, getComponentType());
             } else {
-                addError(ErrorType.INCOMPATIBLE_TYPES, getStart());
+                addError(ErrorType.INCOMPATIBLE_TYPES);
                 symbolTable.registerSymbol(variableName, CatscriptType.OBJECT);
             }
+            slot = symbolTable.getSymbolSlot(variableName);
         }
         for (Statement statement : body) {
             statement.validate(symbolTable);
@@ -74,23 +80,54 @@ public class ForStatement extends Statement {
         return ((CatscriptType.ListType) expression.getType()).getComponentType();
     }
 
+    @Override
+    public void foldConstants() {
+        expression.foldConstants();
+        foldConstants(body);
+    }
+
     //==============================================================
     // Implementation
     //==============================================================
     @Override
     public void execute(CatscriptRuntime runtime) {
-        runtime.pushScope();
-
-        // ListLiteralExpression
-        ArrayList<Object>  exprList = (ArrayList<Object>) expression.evaluate(runtime);
-        for (Object exprValue : exprList) {
-            runtime.setValue(variableName, exprValue);
-            for (Statement stmt : body) {
-                stmt.execute(runtime);
+        List<?> exprList = (List<?>) expression.evaluate(runtime);
+        if (exprList instanceof IntList) {
+            IntList intList = (IntList) exprList;
+            for (int i = 0; i < intList.size(); i++) {
+                if (!executeBody(runtime, intList.getInt(i))) {
+                    return;
+                }
+            }
+        } else if (exprList instanceof BooleanList) {
+            BooleanList booleanList = (BooleanList) exprList;
+            for (int i = 0; i < booleanList.size(); i++) {
+                if (!executeBody(runtime, booleanList.getBoolean(i))) {
+                    return;
+                }
+            }
+        } else {
+            for (Object exprValue : exprList) {
+                if (!executeBody(runtime, exprValue)) {
+                    return;
+                }
             }
         }
+    }
 
-        runtime.popScope();
+    // runs the body for one element, returns false once a return statement has run
+    private boolean executeBody(CatscriptRuntime runtime, Object exprValue) {
+        runtime.setValue(0, slot, exprValue);
+        if (function != null) {
+            function.countBackEdge();
+        }
+        for (Statement stmt : body) {
+            stmt.execute(runtime);
+            if (runtime.isReturning()) {
+                return false;
+            }
+        }
+        return true;
     }
 
     @Override
@@ -100,45 +137,123 @@ public class ForStatement extends Statement {
 
     @Override
     public void compile(ByteCodeGenerator code) {
+        // the loop's slots (list, iterator, index, variable and anything the body declares)
+        // are free again after the loop
+        code.pushScope();
+        CatscriptType componentType = getComponentType();
+        if (componentType == CatscriptType.INT || componentType == CatscriptType.BOOLEAN) {
+            compilePrimitiveLoop(code, componentType);
+        } else {
+            compileObjectLoop(code, componentType);
+        }
+        code.popScope();
+    }
+
+    // RandomAccess lists are looped over by index with get(i), anything else with an iterator;
+    // the choice is made once before the loop, the body is only compiled once
+    private void compileObjectLoop(ByteCodeGenerator code, CatscriptType componentType) {
+        String listInternalName = internalNameFor(List.class);
+        Integer listSlot = code.nextLocalStorageSlot();
+        Integer sizeSlot = code.nextLocalStorageSlot();
         Integer iterSlot = code.nextLocalStorageSlot();
+        Integer indexSlot = code.nextLocalStorageSlot();
 
+        Label useIndex = new Label();
         Label start = new Label();
+        Label useIterator = new Label();
+        Label fetched = new Label();
         Label end = new Label();
 
         expression.compile(code);
+        code.addVarInstruction(Opcodes.ASTORE, listSlot);
+        code.addVarInstruction(Opcodes.ALOAD, listSlot);
+        code.addMethodInstruction(Opcodes.INVOKEINTERFACE, listInternalName, "size", "()I");
+        code.addVarInstruction(Opcodes.ISTORE, sizeSlot);
 
-        code.addMethodInstruction(Opcodes.INVOKEINTERFACE, internalNameFor(List.class), "iterator", "()Ljava/util/Iterator;");
+        // iterator stays null for RandomAccess lists
+        code.pushConstantOntoStack(null);
         code.addVarInstruction(Opcodes.ASTORE, iterSlot);
-        code.addLabel(start);
+        code.addVarInstruction(Opcodes.ALOAD, listSlot);
+        code.addTypeInstruction(Opcodes.INSTANCEOF, internalNameFor(RandomAccess.class));
+        code.addJumpInstruction(Opcodes.IFNE, useIndex);
+        code.addVarInstruction(Opcodes.ALOAD, listSlot);
+        code.addMethodInstruction(Opcodes.INVOKEINTERFACE, listInternalName, "iterator", "()Ljava/util/Iterator;");
+        code.addVarInstruction(Opcodes.ASTORE, iterSlot);
+        code.addLabel(useIndex);
 
-        code.addVarInstruction(Opcodes.ALOAD, iterSlot);
-        code.addMethodInstruction(Opcodes.INVOKEINTERFACE, internalNameFor(Iterator.class), "hasNext", "()Z");
+        code.pushConstantOntoStack(0);
+        code.addVarInstruction(Opcodes.ISTORE, indexSlot);
+        code.addLabel(start);
 
-        code.addJumpInstruction(Opcodes.IFEQ, end);
+        code.addVarInstruction(Opcodes.ILOAD, indexSlot);
+        code.addVarInstruction(Opcodes.ILOAD, sizeSlot);
+        code.addJumpInstruction(Opcodes.IF_ICMPGE, end);
 
-        CatscriptType componentType = getComponentType();
         code.addVarInstruction(Opcodes.ALOAD, iterSlot);
-
+        code.addJumpInstruction(Opcodes.IFNONNULL, useIterator);
+        code.addVarInstruction(Opcodes.ALOAD, listSlot);
+        code.addVarInstruction(Opcodes.ILOAD, indexSlot);
+        code.addMethodInstruction(Opcodes.INVOKEINTERFACE, listInternalName, "get", "(I)Ljava/lang/Object;");
+        code.addJumpInstruction(Opcodes.GOTO, fetched);
+        code.addLabel(useIterator);
+        code.addVarInstruction(Opcodes.ALOAD, iterSlot);
         code.addMethodInstruction(Opcodes.INVOKEINTERFACE, internalNameFor(Iterator.class), "next", "()Ljava/lang/Object;");
+        code.addLabel(fetched);
 
         code.addTypeInstruction(Opcodes.CHECKCAST, internalNameFor(componentType.getJavaType()));
-        unbox(code, componentType);
-
         Integer varSlot = code.createLocalStorageSlotFor(variableName);
+        code.addVarInstruction(Opcodes.ASTORE, varSlot);
+
+        for (Statement stmt : body) {
+            stmt.compile(code);
+        }
+
+        code.addIncrementInstruction(indexSlot, 1);
+        code.addJumpInstruction(Opcodes.GOTO, start);
+        code.addLabel(end);
+    }
 
-        if (componentType.equals(CatscriptType.INT) || componentType.equals(CatscriptType.BOOLEAN)) {
-            code.addVarInstruction(Opcodes.ISTORE, varSlot);
+    // list<int> and list<bool> are looped over by index, unboxed; lists that aren't stored
+    // unboxed already (e.g. built from elements of mixed static types) are converted first
+    private void compilePrimitiveLoop(ByteCodeGenerator code, CatscriptType componentType) {
+        boolean ints = componentType == CatscriptType.INT;
+        String listInternalClassName = internalNameFor(ints ? IntList.class : BooleanList.class);
+        Integer listSlot = code.nextLocalStorageSlot();
+        Integer indexSlot = code.nextLocalStorageSlot();
+
+        Label start = new Label();
+        Label end = new Label();
+
+        expression.compile(code);
+        code.addMethodInstruction(Opcodes.INVOKESTATIC, listInternalClassName, "from",
+                "(Ljava/util/List;)L" + listInternalClassName + ";");
+        code.addVarInstruction(Opcodes.ASTORE, listSlot);
+        code.pushConstantOntoStack(0);
+        code.addVarInstruction(Opcodes.ISTORE, indexSlot);
+        code.addLabel(start);
+
+        code.addVarInstruction(Opcodes.ILOAD, indexSlot);
+        code.addVarInstruction(Opcodes.ALOAD, listSlot);
+        code.addMethodInstruction(Opcodes.INVOKEVIRTUAL, listInternalClassName, "size", "()I");
+        code.addJumpInstruction(Opcodes.IF_ICMPGE, end);
+
+        code.addVarInstruction(Opcodes.ALOAD, listSlot);
+        code.addVarInstruction(Opcodes.ILOAD, indexSlot);
+        if (ints) {
+            code.addMethodInstruction(Opcodes.INVOKEVIRTUAL, listInternalClassName, "getInt", "(I)I");
         } else {
-            code.addVarInstruction(Opcodes.ASTORE, varSlot);
+            code.addMethodInstruction(Opcodes.INVOKEVIRTUAL, listInternalClassName, "getBoolean", "(I)Z");
         }
+        Integer varSlot = code.createLocalStorageSlotFor(variableName);
+        code.addVarInstruction(Opcodes.ISTORE, varSlot);
 
         for (Statement stmt : body) {
             stmt.compile(code);
         }
 
+        code.addIncrementInstruction(indexSlot, 1);
         code.addJumpInstruction(Opcodes.GOTO, start);
         code.addLabel(end);
-
     }
 
 }
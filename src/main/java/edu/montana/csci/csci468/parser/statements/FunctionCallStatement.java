@@ -8,13 +8,14 @@ import edu.montana.csci.csci468.parser.expressions.Expression;
 import edu.montana.csci.csci468.parser.expressions.FunctionCallExpression;
 import org.objectweb.asm.Opcodes;
 
-import java.util.ArrayList;
 import java.util.List;
 
 public class FunctionCallStatement extends Statement {
     private FunctionCallExpression expression;
     public FunctionCallStatement(FunctionCallExpression parseExpression) {
         this.expression = addChild(parseExpression);
+        setStart(parseExpression);
+        setEnd(parseExpression);
     }
 
     public List<Expression> getArguments() {
@@ -30,17 +31,17 @@ public class FunctionCallStatement extends Statement {
         return expression.getName();
     }
 
+    @Override
+    public void foldConstants() {
+        expression.foldConstants();
+    }
+
     //==============================================================
     // Implementation
     //==============================================================
     @Override
     public void execute(CatscriptRuntime runtime) {
-        List<Object> fncArgs = new ArrayList<>();
-        for (Expression expr : getArguments()) {
-            fncArgs.add(expr.evaluate(runtime));
-        }
-        FunctionDefinitionStatement fnc = getProgram().getFunction(getName());
-        fnc.invoke(runtime, fncArgs);
+        expression.evaluate(runtime);
     }
 
     @Override
@@ -51,5 +52,9 @@ public class FunctionCallStatement extends Statement {
     @Override
     public void compile(ByteCodeGenerator code) {
         expression.compile(code);
+        // the result is unused, don't leave it on the stack
+        if (expression.getType() != CatscriptType.VOID) {
+            code.addInstruction(Opcodes.POP);
+        }
     }
 }
@@ -1,8 +1,8 @@
 package edu.montana.csci.csci468.parser.statements;
 
 import edu.montana.csci.csci468.bytecode.ByteCodeGenerator;
+import edu.montana.csci.csci468.bytecode.CompiledFunction;
 import edu.montana.csci.csci468.eval.CatscriptRuntime;
-import edu.montana.csci.csci468.eval.ReturnException;
 import edu.montana.csci.csci468.parser.CatscriptType;
 import edu.montana.csci.csci468.parser.ErrorType;
 import edu.montana.csci.csci468.parser.ParseError;
@@ -13,8 +13,10 @@ import org.objectweb.asm.Opcodes;
 import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
-import static edu.montana.csci.csci468.bytecode.ByteCodeGenerator.internalNameFor;
+import static edu.montana.csci.csci468.bytecode.ByteCodeGenerator.descriptorFor;
 
 public class FunctionDefinitionStatement extends Statement {
     private String name;
@@ -22,6 +24,14 @@ public class FunctionDefinitionStatement extends Statement {
     private List<CatscriptType> argumentTypes = new ArrayList<>();
     private List<String> argumentNames = new ArrayList<>();
     private LinkedList<Statement> body;
+    private int frameSize;
+    // profile for tiered execution: the function is compiled once it gets hot enough.
+    // A program may run on several threads at once, so the counts are atomic and only the
+    // thread that flips compileAttempted compiles
+    private final AtomicInteger invocationCount = new AtomicInteger();
+    private final AtomicInteger backEdgeCount = new AtomicInteger();
+    private final AtomicBoolean compileAttempted = new AtomicBoolean();
+    private volatile CompiledFunction compiled;
 
     public void setName(String name) {
         this.name = name;
@@ -79,7 +89,10 @@ public class FunctionDefinitionStatement extends Statement {
 
     @Override
     public void validate(SymbolTable symbolTable) {
-        symbolTable.pushScope();
+        if (symbolTable.deferFunctionBody(this)) {
+            return;
+        }
+        symbolTable.pushFrame();
         for (int i = 0; i < getParameterCount(); i++) {
             if (symbolTable.hasSymbol(getParameterName(i))) {
                 addError(ErrorType.DUPLICATE_NAME);
@@ -90,8 +103,8 @@ public class FunctionDefinitionStatement extends Statement {
         for (Statement statement : body) {
             statement.validate(symbolTable);
         }
-        symbolTable.popScope();
-        if (!type.equals(CatscriptType.VOID)) {
+        frameSize = symbolTable.popFrame();
+        if (type != CatscriptType.VOID) {
             if (!validateReturnCoverage(body)) {
                 addError(ErrorType.MISSING_RETURN_STATEMENT);
             }
@@ -103,45 +116,75 @@ public class FunctionDefinitionStatement extends Statement {
         return true;
     }
 
-    public Object invoke(CatscriptRuntime runtime, List<Object> args) {
-        runtime.pushScope();
-        int parameterCount = getParameterCount();
-        for (int i = 0; i < parameterCount; i++) {
-            runtime.setValue(getParameterName(i), args.get(i));
+    // parameters occupy the first slots of the frame, callers fill them in before invoking
+    public Object[] allocateFrame(CatscriptRuntime runtime) {
+        return new Object[compiledFor(runtime) != null ? getParameterCount() : frameSize];
+    }
+
+    // counted by loops in the body, see ForStatement
+    public void countBackEdge() {
+        backEdgeCount.incrementAndGet();
+    }
+
+    public boolean isCompiled() {
+        return compiled != null;
+    }
+
+    // The compiled code is kept here, with the function, so a runtime with a negative
+    // threshold has to skip it: an earlier tiered run may have compiled it already.
+    private CompiledFunction compiledFor(CatscriptRuntime runtime) {
+        return runtime.getCompileThreshold() >= 0 ? compiled : null;
+    }
+
+    @Override
+    protected void resetRuntimeState() {
+        invocationCount.set(0);
+        backEdgeCount.set(0);
+        compileAttempted.set(false);
+        compiled = null;
+        super.resetRuntimeState();
+    }
+
+    public Object invoke(CatscriptRuntime runtime, Object[] frame) {
+        CompiledFunction compiled = compiledFor(runtime);
+        if (compiled == null && !compileAttempted.get()) {
+            int threshold = runtime.getCompileThreshold();
+            if (threshold >= 0 && invocationCount.incrementAndGet() + backEdgeCount.get() >= threshold
+                    && compileAttempted.compareAndSet(false, true)) {
+                compiled = this.compiled = CompiledFunction.compile(this);
+            }
+        }
+        if (compiled != null) {
+            return compiled.invoke(frame);
         }
-        Object returnVal = null;
+        Object[] callerFrame = runtime.pushFrame(frame);
         try {
             for (Statement statement : body) {
                 statement.execute(runtime);
+                if (runtime.isReturning()) {
+                    break;
+                }
             }
-        } catch (ReturnException re) {
-            returnVal = re.getValue();
+            return runtime.takeReturnValue();
         } finally {
-            runtime.popScope();
+            runtime.popFrame(callerFrame);
         }
-        return returnVal;
     }
 
     public String getDescriptor() {
         StringBuilder sb = new StringBuilder("(");
         for (CatscriptType argumentType : argumentTypes) {
-            if (argumentType.equals(CatscriptType.BOOLEAN) || argumentType.equals(CatscriptType.INT)) {
-                sb.append("I");
-            } else {
-                sb.append("L").append(internalNameFor(getType().getJavaType())).append(";");
-            }
-        }
-        sb.append(")");
-        if (type.equals(CatscriptType.VOID)) {
-            sb.append("V");
-        } else if (type.equals(CatscriptType.BOOLEAN) || type.equals(CatscriptType.INT)) {
-            sb.append("I");
-        } else {
-            sb.append("L").append(internalNameFor(getType().getJavaType())).append(";");
+            sb.append(descriptorFor(argumentType));
         }
+        sb.append(")").append(descriptorFor(type));
         return sb.toString();
     }
 
+    @Override
+    public void foldConstants() {
+        foldConstants(body);
+    }
+
     //==============================================================
     // Implementation
     //==============================================================
@@ -157,7 +200,7 @@ public class FunctionDefinitionStatement extends Statement {
 
     @Override
     public void compile(ByteCodeGenerator code) {
-        code.pushMethod(Opcodes.ACC_PUBLIC, getName(), getDescriptor());
+        code.pushMethod(Opcodes.ACC_PUBLIC, code.memberNameFor(getName()), getDescriptor());
 
         for(int x = 0; x < getParameterCount(); x++) {
             code.createLocalStorageSlotFor(getParameterName(x));
@@ -18,6 +18,9 @@ public class IfStatement extends Statement {
     private Expression expression;
     private List<Statement> trueStatements = Collections.emptyList();
     private List<Statement> elseStatements = Collections.emptyList();
+    // the condition, if folding found it constant; a literal condition counts only then,
+    // so nothing is pruned with the optimizer off
+    private Boolean foldedCondition;
 
     public Expression getExpression() {
         return expression;
@@ -52,7 +55,7 @@ public class IfStatement extends Statement {
     @Override
     public void validate(SymbolTable symbolTable) {
         expression.validate(symbolTable);
-        if (!expression.getType().equals(CatscriptType.BOOLEAN)) {
+        if (expression.getType() != CatscriptType.BOOLEAN) {
             expression.addError(ErrorType.INCOMPATIBLE_TYPES);
         }
         symbolTable.pushScope();
@@ -67,15 +70,36 @@ public class IfStatement extends Statement {
         symbolTable.popScope();
     }
 
+    // a constant condition is not pruned here, the branch it rules out is still verified;
+    // compile leaves it out (see below) and execute never reaches it
+    @Override
+    public void foldConstants() {
+        expression.foldConstants();
+        if (expression.isConstant()) {
+            foldedCondition = (Boolean) expression.evaluate(null);
+        }
+        foldConstants(trueStatements);
+        foldConstants(elseStatements);
+    }
+
+    @Override
+    protected void resetRuntimeState() {
+        foldedCondition = null;
+        super.resetRuntimeState();
+    }
+
     //==============================================================
     // Implementation
     //==============================================================
     @Override
     public void execute(CatscriptRuntime runtime) {
         List<Statement> stmts = ((Boolean) expression.evaluate(runtime)) ? trueStatements : elseStatements;
-        runtime.pushScope();
-        stmts.forEach(stmt -> stmt.execute(runtime));
-        runtime.popScope();
+        for (Statement stmt : stmts) {
+            stmt.execute(runtime);
+            if (runtime.isReturning()) {
+                return;
+            }
+        }
     }
 
     @Override
@@ -85,6 +109,12 @@ public class IfStatement extends Statement {
 
     @Override
     public void compile(ByteCodeGenerator code) {
+        // a folded condition needs no test, only the branch it selects
+        if (foldedCondition != null) {
+            compileBlock(code, foldedCondition ? trueStatements : elseStatements);
+            return;
+        }
+
         // compile expression
         expression.compile(code);
 
@@ -99,19 +129,25 @@ public class IfStatement extends Statement {
             code.addJumpInstruction(Opcodes.IFEQ, endLabel);
         }
 
-        for (Statement stmt : getTrueStatements()) {
-            stmt.compile(code);
-        }
+        compileBlock(code, getTrueStatements());
 
         code.addJumpInstruction(Opcodes.GOTO, endLabel);
 
         if (!elseStatements.isEmpty()) {
             code.addLabel(elseLabel);
-            for (Statement stmt : getElseStatements()) {
-                stmt.compile(code);
-            }
+            compileBlock(code, getElseStatements());
         }
 
         code.addLabel(endLabel);
     }
+
+    // each branch is its own scope, the else branch reuses the slots of the true branch
+    private void compileBlock(ByteCodeGenerator code, List<Statement> statements) {
+        code.pushScope();
+        for (Statement stmt : statements) {
+            stmt.compile(code);
+        }
+        code.popScope();
+    }
+
 }
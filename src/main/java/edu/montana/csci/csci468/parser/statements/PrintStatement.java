@@ -25,6 +25,11 @@ public class PrintStatement extends Statement {
         expression.validate(symbolTable);
     }
 
+    @Override
+    public void foldConstants() {
+        expression.foldConstants();
+    }
+
     //==============================================================
     // Implementation
     //==============================================================
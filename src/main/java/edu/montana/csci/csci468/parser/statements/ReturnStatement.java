@@ -2,7 +2,6 @@ package edu.montana.csci.csci468.parser.statements;
 
 import edu.montana.csci.csci468.bytecode.ByteCodeGenerator;
 import edu.montana.csci.csci468.eval.CatscriptRuntime;
-import edu.montana.csci.csci468.eval.ReturnException;
 import edu.montana.csci.csci468.parser.CatscriptType;
 import edu.montana.csci.csci468.parser.ErrorType;
 import edu.montana.csci.csci468.parser.ParseError;
@@ -34,18 +33,29 @@ public class ReturnStatement extends Statement {
                 expression.addError(ErrorType.INCOMPATIBLE_TYPES);
             }
         } else {
-            if (!function.getType().equals(CatscriptType.VOID)) {
+            if (function.getType() != CatscriptType.VOID) {
                 addError(ErrorType.INCOMPATIBLE_TYPES);
             }
         }
     }
 
+    @Override
+    public void foldConstants() {
+        if (expression != null) {
+            expression.foldConstants();
+        }
+    }
+
     //==============================================================
     // Implementation
     //==============================================================
     @Override
     public void execute(CatscriptRuntime runtime) {
-        throw new ReturnException(expression.evaluate(runtime));
+        if (expression == null) {
+            runtime.returnWith(null);
+        } else {
+            runtime.returnWith(expression.evaluate(runtime));
+        }
     }
 
     @Override
@@ -55,18 +65,18 @@ public class ReturnStatement extends Statement {
 
     @Override
     public void compile(ByteCodeGenerator code) {
-        // compile code
-        expression.compile(code);
-
-        // are we returning an object?
-        if(function.getType().equals(CatscriptType.OBJECT)){
-            box(code, expression.getType());
+        CatscriptType returnType = function.getType();
+        if (expression == null) {
+            code.addInstruction(Opcodes.RETURN);
+            return;
         }
+        expression.compile(code);
 
-        // add instruction depending on type
-        if(function.getType().equals(CatscriptType.INT) || function.getType().equals(CatscriptType.BOOLEAN)) {
+        // ints and bools are returned as they are, everything else as an object
+        if (returnType == CatscriptType.INT || returnType == CatscriptType.BOOLEAN) {
             code.addInstruction(Opcodes.IRETURN);
         } else {
+            box(code, expression.getType());
             code.addInstruction(Opcodes.ARETURN);
         }
     }
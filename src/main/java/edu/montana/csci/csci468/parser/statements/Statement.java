@@ -4,10 +4,31 @@ import edu.montana.csci.csci468.bytecode.ByteCodeGenerator;
 import edu.montana.csci.csci468.eval.CatscriptRuntime;
 import edu.montana.csci.csci468.parser.ParseElement;
 
+import java.util.List;
+
 public abstract class Statement extends ParseElement {
 
     public void execute(CatscriptRuntime runtime) {
         throw new UnsupportedOperationException("execute needs to be implemented for " + this.getClass().getName());
     }
 
+    // folds constant expressions, see CatScriptProgram.optimize
+    public void foldConstants() {
+    }
+
+    // the function this statement is part of, null at the top level
+    public FunctionDefinitionStatement getFunction() {
+        ParseElement element = getParent();
+        while (element != null && !(element instanceof FunctionDefinitionStatement)) {
+            element = element.getParent();
+        }
+        return (FunctionDefinitionStatement) element;
+    }
+
+    protected static void foldConstants(List<Statement> statements) {
+        for (Statement statement : statements) {
+            statement.foldConstants();
+        }
+    }
+
 }
@@ -4,12 +4,12 @@ import edu.montana.csci.csci468.bytecode.ByteCodeGenerator;
 import edu.montana.csci.csci468.eval.CatscriptRuntime;
 import edu.montana.csci.csci468.parser.ErrorType;
 import edu.montana.csci.csci468.parser.SymbolTable;
-import edu.montana.csci.csci468.tokenizer.Token;
+import edu.montana.csci.csci468.tokenizer.TokenList;
 
 public class SyntaxErrorStatement extends Statement {
 
-    public SyntaxErrorStatement(Token start) {
-        setToken(start);
+    public SyntaxErrorStatement(TokenList tokens, int start) {
+        setToken(tokens, start);
         addError(ErrorType.UNEXPECTED_TOKEN);
     }
 
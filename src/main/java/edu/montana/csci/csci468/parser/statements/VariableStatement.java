@@ -9,13 +9,14 @@ import edu.montana.csci.csci468.parser.SymbolTable;
 import edu.montana.csci.csci468.parser.expressions.Expression;
 import org.objectweb.asm.Opcodes;
 
-import static edu.montana.csci.csci468.bytecode.ByteCodeGenerator.internalNameFor;
+import static edu.montana.csci.csci468.bytecode.ByteCodeGenerator.descriptorFor;
 
 public class VariableStatement extends Statement {
     private Expression expression;
     private String variableName;
     private CatscriptType explicitType;
     private CatscriptType type;
+    private int slot;
 
     public Expression getExpression() {
         return expression;
@@ -60,6 +61,7 @@ public class VariableStatement extends Statement {
                 addError(ErrorType.INCOMPATIBLE_TYPES);
             }
             symbolTable.registerSymbol(variableName, type);
+            slot = symbolTable.getSymbolSlot(variableName);
         }
     }
 
@@ -67,12 +69,17 @@ public class VariableStatement extends Statement {
         return type;
     }
 
+    @Override
+    public void foldConstants() {
+        expression.foldConstants();
+    }
+
     //==============================================================
     // Implementation
     //==============================================================
     @Override
     public void execute(CatscriptRuntime runtime) {
-        runtime.setValue(variableName, expression.evaluate(runtime));
+        runtime.setValue(0, slot, expression.evaluate(runtime));
     }
 
     @Override
@@ -89,16 +96,10 @@ public class VariableStatement extends Statement {
             // - if the type is a BOOLEAN
             // there is a distinction between the integer type and the reference type
 
-            code.addVarInstruction(Opcodes.ALOAD, 0);
+            String descName = descriptorFor(getType());
+            code.startGlobalStore(variableName, descName);
             expression.compile(code);
-            String descName = "I";
-
-            if (!getType().equals(CatscriptType.INT) && !getType().equals(CatscriptType.BOOLEAN)) {
-                descName = "L" + internalNameFor(getType().getJavaType()) + ";";
-            }
-
-            code.addField(variableName, descName);
-            code.addFieldInstruction(Opcodes.PUTFIELD, variableName, descName, code.getProgramInternalName());
+            code.finishGlobalStore(variableName, descName);
 
         } else { // store in a slot
             // create a local storage slot
@@ -108,7 +109,7 @@ public class VariableStatement extends Statement {
             expression.compile(code);
 
             // there is a distinction between the integer type and the reference type
-            if (getType().equals(CatscriptType.INT) || getType().equals(CatscriptType.BOOLEAN)) {
+            if (getType() == CatscriptType.INT || getType() == CatscriptType.BOOLEAN) {
                 code.addVarInstruction(Opcodes.ISTORE, localSlot);
             } else {
                 code.addVarInstruction(Opcodes.ASTORE, localSlot);
@@ -1,28 +1,125 @@
 package edu.montana.csci.csci468.tokenizer;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
 import static edu.montana.csci.csci468.tokenizer.TokenType.*;
 
 public class CatScriptTokenizer {
 
+    private static final String[] KEYWORD_NAMES = KEYWORDS.keySet().toArray(new String[0]);
+    private static final int STREAM_CHUNK_SIZE = 8192;
+
     TokenList tokenList;
-    String src;
+    // a String, or a view over a mapped file
+    CharSequence src;
     int postion = 0;
-    int line = 1;
-    int lineOffset = 0;
+    // the position each line starts at, lines and columns of tokens are looked up in here
+    private int[] lineStarts = new int[16];
+    private int lineCount = 1;
+    // streaming only, how many lines have been dropped from the front of lineStarts since
+    // no buffered token is on them any more; lineStarts[0] is the start of line lineBase + 1
+    private int lineBase;
+    // set when this is an earlier source with edits applied, which keeps the line index
+    private EditedCharSequence edited;
+    // scan tokens as the token list is read instead of all up front
+    private boolean lazy;
+    private boolean finished;
+
+    // streaming input: only the characters from the start of the token being scanned up to
+    // what has been read so far are kept, in window[0 .. windowEnd - windowStart)
+    private final Reader reader;
+    private char[] window;
+    private int windowStart;
+    private int windowEnd;
+    private int tokenStart;
+    private boolean inputExhausted;
 
     public CatScriptTokenizer(String source) {
         src = source;
+        reader = null;
         tokenList = new TokenList(this);
         tokenize();
     }
 
+    // Tokenizes a buffer of UTF-8 (typically a mapped file) without copying it when it is
+    // pure ASCII, token values are only cut from the buffer when they are asked for.
+    // Anything else is decoded once up front.
+    public CatScriptTokenizer(ByteBuffer source) {
+        if (ByteBufferCharSequence.isAscii(source)) {
+            src = new ByteBufferCharSequence(source);
+        } else {
+            src = StandardCharsets.UTF_8.decode(source.duplicate());
+        }
+        reader = null;
+        tokenList = new TokenList(this);
+        tokenize();
+    }
+
+    // Tokens are scanned on demand as the token list is read, so neither the source
+    // nor the full token list is ever held in memory.  The reader is not closed.
+    public CatScriptTokenizer(Reader source) {
+        src = null;
+        reader = source;
+        window = new char[STREAM_CHUNK_SIZE];
+        tokenList = new TokenList(this);
+    }
+
+    private CatScriptTokenizer(EditedCharSequence source, int resumeAt) {
+        src = source;
+        edited = source;
+        reader = null;
+        lazy = true;
+        postion = resumeAt;
+        tokenList = new TokenList(this);
+    }
+
+    // A tokenizer over this source with an edit applied, which lazily scans from resumeAt
+    // (a token start at or before the edit) so only the text that gets parsed is tokenized.
+    // Neither the source nor its line index is copied, see EditedCharSequence.
+    public CatScriptTokenizer edit(int offset, int removedLength, String insertedText, int resumeAt) {
+        if (reader != null) {
+            throw new IllegalStateException("A streamed source can not be edited");
+        }
+        EditedCharSequence source = edited != null ? edited : new EditedCharSequence(src, lineStarts, lineCount);
+        return new CatScriptTokenizer(source.edit(offset, removedLength, insertedText), resumeAt);
+    }
+
+    boolean isStreaming() {
+        return reader != null;
+    }
+
+    boolean isLazy() {
+        return lazy || reader != null;
+    }
+
     private void tokenize() {
-        consumeWhitespace();
-        while (!tokenizationEnd()) {
-            scanToken();
+        while (scanNextToken()) {
+        }
+    }
+
+    // scans until at least one more token (possibly EOF) has been added,
+    // returns false once the EOF token is in the list
+    boolean scanNextToken() {
+        if (finished) {
+            return false;
+        }
+        int before = tokenList.size();
+        while (tokenList.size() == before) {
             consumeWhitespace();
+            tokenStart = postion;
+            if (tokenizationEnd()) {
+                tokenList.addToken(EOF, "<EOF>", postion, postion);
+                finished = true;
+                return false;
+            }
+            scanToken();
         }
-        tokenList.addToken(EOF, "<EOF>", postion, postion, line, lineOffset);
+        return true;
     }
 
     private void scanToken() {
@@ -57,14 +154,12 @@ public class CatScriptTokenizer {
             takeChar();
         }
 
-        // let's get the value of the string we just iterated through
-        String value = src.substring(start, postion);
-
+        // the value of the string is cut from the source lazily by the token list
         if(!tokenizationEnd()) {
             takeChar();
-            tokenList.addToken(STRING, value, start, postion, line, lineOffset);
+            tokenList.addToken(STRING, start, postion);
         } else {
-            tokenList.addToken(ERROR, value, start, postion, line, lineOffset);
+            tokenList.addToken(ERROR, start, postion);
         }
 
         return true;
@@ -76,12 +171,7 @@ public class CatScriptTokenizer {
             while (isAlphaNumeric(peek())) {
                 takeChar();
             }
-            String value = src.substring(start, postion);
-            if (KEYWORDS.containsKey(value)) {
-                tokenList.addToken(KEYWORDS.get(value), value, start, postion, line, lineOffset);
-            } else {
-                tokenList.addToken(IDENTIFIER, value, start, postion, line, lineOffset);
-            }
+            tokenList.addToken(keywordOrIdentifier(start, postion), start, postion);
             return true;
         } else {
             return false;
@@ -94,7 +184,7 @@ public class CatScriptTokenizer {
             while (isDigit(peek())) {
                 takeChar();
             }
-            tokenList.addToken(INTEGER, src.substring(start, postion), start, postion, line, lineOffset);
+            tokenList.addToken(INTEGER, start, postion);
             return true;
         } else {
             return false;
@@ -104,24 +194,24 @@ public class CatScriptTokenizer {
     private void scanSyntax() {
         int start = postion;
         // parenthesis - "(" or ")"
-        if(matchAndConsume('(')) tokenList.addToken(LEFT_PAREN, "(", start, postion, line, lineOffset);
-        else if(matchAndConsume(')')) tokenList.addToken(RIGHT_PAREN, ")", start, postion, line, lineOffset);
+        if(matchAndConsume('(')) tokenList.addToken(LEFT_PAREN, start, postion);
+        else if(matchAndConsume(')')) tokenList.addToken(RIGHT_PAREN, start, postion);
         // brace - "{" or "}"
-        else if(matchAndConsume('{')) tokenList.addToken(LEFT_BRACE, "{", start, postion, line, lineOffset);
-        else if(matchAndConsume('}')) tokenList.addToken(RIGHT_BRACE, "}", start, postion, line, lineOffset);
+        else if(matchAndConsume('{')) tokenList.addToken(LEFT_BRACE, start, postion);
+        else if(matchAndConsume('}')) tokenList.addToken(RIGHT_BRACE, start, postion);
         // bracket - "[" or "]"
-        else if(matchAndConsume('[')) tokenList.addToken(LEFT_BRACKET, "[", start, postion, line, lineOffset);
-        else if(matchAndConsume(']')) tokenList.addToken(RIGHT_BRACKET, "]", start, postion, line, lineOffset);
+        else if(matchAndConsume('[')) tokenList.addToken(LEFT_BRACKET, start, postion);
+        else if(matchAndConsume(']')) tokenList.addToken(RIGHT_BRACKET, start, postion);
         // colon
-        else if(matchAndConsume(':')) tokenList.addToken(COLON, ":", start, postion, line, lineOffset);
+        else if(matchAndConsume(':')) tokenList.addToken(COLON, start, postion);
         // comma
-        else if(matchAndConsume(',')) tokenList.addToken(COMMA, ",", start, postion, line, lineOffset);
+        else if(matchAndConsume(',')) tokenList.addToken(COMMA, start, postion);
         // period (dot)
-        else if(matchAndConsume('.')) tokenList.addToken(DOT, ".", start, postion, line, lineOffset);
+        else if(matchAndConsume('.')) tokenList.addToken(DOT, start, postion);
         // minus
-        else if(matchAndConsume('-')) tokenList.addToken(MINUS, "-", start, postion, line, lineOffset);
+        else if(matchAndConsume('-')) tokenList.addToken(MINUS, start, postion);
         // plus
-        else if(matchAndConsume('+')) tokenList.addToken(PLUS, "+", start, postion, line, lineOffset);
+        else if(matchAndConsume('+')) tokenList.addToken(PLUS, start, postion);
         // forward slash
         else if(matchAndConsume('/')) {
             // are we looking at an inline-comment? (i.e. "// some comment")
@@ -131,46 +221,46 @@ public class CatScriptTokenizer {
                     takeChar();
                 }
             } else {
-                tokenList.addToken(SLASH, "/", start, postion, line, lineOffset);
+                tokenList.addToken(SLASH, start, postion);
             }
         }
         // asterisk (STAR)
-        else if(matchAndConsume('*')) tokenList.addToken(STAR, "*", start, postion, line, lineOffset);
+        else if(matchAndConsume('*')) tokenList.addToken(STAR, start, postion);
         // !=
         else if (matchAndConsume('!')) {
             if (matchAndConsume('=')) {
-                tokenList.addToken(BANG_EQUAL, "!=", start, postion, line, lineOffset);
+                tokenList.addToken(BANG_EQUAL, start, postion);
             }
         }
         // equal
         else if(matchAndConsume('=')) {
             // equal_equal
             if (matchAndConsume('=')) {
-                tokenList.addToken(EQUAL_EQUAL, "==", start, postion, line, lineOffset);
+                tokenList.addToken(EQUAL_EQUAL, start, postion);
             } else { // just one equal (=) sign
-                tokenList.addToken(EQUAL, "=", start, postion, line, lineOffset);
+                tokenList.addToken(EQUAL, start, postion);
             }
         }
         // greater(than)
         else if(matchAndConsume('>')) {
             // greater_equal?
             if (matchAndConsume('=')) {
-                tokenList.addToken(GREATER_EQUAL, ">=", start, postion, line, lineOffset);
+                tokenList.addToken(GREATER_EQUAL, start, postion);
             } else { // just a greater(than) sign
-                tokenList.addToken(GREATER, ">", start, postion, line, lineOffset);
+                tokenList.addToken(GREATER, start, postion);
             }
         }
         // less(than)
         else if(matchAndConsume('<')) {
             // less_equal?
             if (matchAndConsume('=')) {
-                tokenList.addToken(LESS_EQUAL, "<=", start, postion, line, lineOffset);
+                tokenList.addToken(LESS_EQUAL, start, postion);
             } else { // just a less(than) sign
-                tokenList.addToken(LESS, "<", start, postion, line, lineOffset);
+                tokenList.addToken(LESS, start, postion);
             }
         }
         // Unexpected Token
-        else tokenList.addToken(ERROR, "<Unexpected Token: [" + takeChar() + "]>", start, postion, line, lineOffset);
+        else tokenList.addToken(ERROR, "<Unexpected Token: [" + takeChar() + "]>", start, postion);
     }
 
     private void consumeWhitespace() {
@@ -178,12 +268,10 @@ public class CatScriptTokenizer {
             char c = peek();
             if (c == ' ' || c == '\r' || c == '\t') {
                 postion++;
-                lineOffset++;
                 continue;
             } else if (c == '\n') {
                 postion++;
-                line++;
-                lineOffset = 0;
+                newLine();
                 continue;
             }
             break;
@@ -196,7 +284,110 @@ public class CatScriptTokenizer {
 
     private char peek() {
         if (tokenizationEnd()) return '\0';
-        return src.charAt(postion);
+        return charAt(postion);
+    }
+
+    private char charAt(int index) {
+        if (reader == null) {
+            return src.charAt(index);
+        }
+        return window[index - windowStart];
+    }
+
+    // the source text between two absolute positions; in streaming mode this must
+    // lie within the token currently being scanned
+    String text(int start, int end) {
+        if (reader == null) {
+            return src.subSequence(start, end).toString();
+        }
+        return new String(window, start - windowStart, end - start);
+    }
+
+    boolean regionMatches(int start, String str) {
+        if (src instanceof String) {
+            return ((String) src).startsWith(str, start);
+        }
+        int end = reader == null ? src.length() : windowEnd;
+        if (start < (reader == null ? 0 : windowStart) || start + str.length() > end) {
+            return false;
+        }
+        for (int i = 0; i < str.length(); i++) {
+            if (charAt(start + i) != str.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void newLine() {
+        if (edited != null) {
+            return;
+        }
+        int indexed = lineCount - lineBase;
+        if (indexed == lineStarts.length) {
+            lineStarts = Arrays.copyOf(lineStarts, indexed * 2);
+        }
+        lineStarts[indexed] = postion;
+        lineCount++;
+    }
+
+    // Streaming only: forgets the lines before the one position is on, called by the token
+    // list as it drops tokens so the line index only covers the buffered ones.
+    void dropLinesBefore(int position) {
+        int drop = lineOf(position) - 1 - lineBase;
+        if (drop > 0) {
+            System.arraycopy(lineStarts, drop, lineStarts, 0, lineCount - lineBase - drop);
+            lineBase += drop;
+        }
+    }
+
+    // how many line starts are held, for tests
+    int indexedLineCount() {
+        return lineCount - lineBase;
+    }
+
+    // 1-based line of a position
+    int lineOf(int position) {
+        if (edited != null) {
+            return edited.lineOf(position);
+        }
+        int low = 0;
+        int high = lineCount - lineBase - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (lineStarts[mid] <= position) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return lineBase + low + 1;
+    }
+
+    int lineStart(int line) {
+        if (edited != null) {
+            return edited.lineStart(line);
+        }
+        return lineStarts[line - 1 - lineBase];
+    }
+
+    // the text of a line without its newline, null when streaming since the source is not kept
+    String lineContent(int line) {
+        if (reader != null) {
+            return null;
+        }
+        int lines = edited != null ? edited.lineCount() : lineCount;
+        int end = line < lines ? lineStart(line + 1) - 1 : src.length();
+        return text(lineStart(line), end);
+    }
+
+    private TokenType keywordOrIdentifier(int start, int end) {
+        for (String keyword : KEYWORD_NAMES) {
+            if (keyword.length() == end - start && regionMatches(start, keyword)) {
+                return KEYWORDS.get(keyword);
+            }
+        }
+        return IDENTIFIER;
     }
 
     private boolean isAlpha(char c) {
@@ -214,14 +405,49 @@ public class CatScriptTokenizer {
     }
 
     private char takeChar() {
-        char c = src.charAt(postion);
+        char c = charAt(postion);
         postion++;
-        lineOffset++;
+        if (c == '\n') {
+            newLine();
+        }
         return c;
     }
 
     private boolean tokenizationEnd() {
-        return postion >= src.length();
+        if (reader == null) {
+            return postion >= src.length();
+        }
+        return postion >= windowEnd && !fill();
+    }
+
+    // reads the next chunk into the window, dropping everything before the current
+    // token and only growing the window for a token longer than the window itself
+    private boolean fill() {
+        while (postion >= windowEnd) {
+            if (inputExhausted) {
+                return false;
+            }
+            int keep = tokenStart - windowStart;
+            if (keep > 0) {
+                System.arraycopy(window, keep, window, 0, windowEnd - tokenStart);
+                windowStart = tokenStart;
+            }
+            int buffered = windowEnd - windowStart;
+            if (buffered == window.length) {
+                window = Arrays.copyOf(window, window.length * 2);
+            }
+            try {
+                int read = reader.read(window, buffered, window.length - buffered);
+                if (read < 0) {
+                    inputExhausted = true;
+                } else {
+                    windowEnd += read;
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return true;
     }
 
     public boolean matchAndConsume(char c) {
@@ -238,12 +464,15 @@ public class CatScriptTokenizer {
 
     @Override
     public String toString() {
+        if (reader != null) {
+            return "CatScriptTokenizer{streaming, position=" + postion + ", line=" + lineCount + "}";
+        }
         if (tokenizationEnd()) {
             return src + "-->[]<--";
         } else {
-            return src.substring(0, postion) + "-->[" + peek() + "]<--" +
+            return src.subSequence(0, postion) + "-->[" + peek() + "]<--" +
                     ((postion == src.length() - 1) ? "" :
-                            src.substring(postion + 1, src.length() - 1));
+                            src.subSequence(postion + 1, src.length() - 1));
         }
     }
-}
\ No newline at end of file
+}
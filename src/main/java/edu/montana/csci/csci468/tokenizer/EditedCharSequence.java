@@ -0,0 +1,204 @@
+package edu.montana.csci.csci468.tokenizer;
+
+import java.util.Arrays;
+
+// A source with edits applied, kept as a piece table: a list of ranges of the original
+// source and of the inserted texts, nothing is copied.  Each piece also points into the
+// line start index of the text it comes from, so the line index of the edited source is
+// never rebuilt either.  An edit costs O(pieces) plus the length of the inserted text.
+class EditedCharSequence implements CharSequence {
+
+    private final CharSequence[] texts;
+    // the piece is texts[i] from textStarts[i], and sits at positions[i] in this sequence;
+    // positions has one more entry, the length
+    private final int[] textStarts;
+    private final int[] positions;
+    // the line starts of the piece are lineStarts[i][lineFrom[i] .. lineTo[i]), in the
+    // text's positions, and linesBefore[i] line starts come before it (linesBefore has
+    // one more entry, the total); line 1 starting at 0 is implicit
+    private final int[][] lineStarts;
+    private final int[] lineFrom;
+    private final int[] lineTo;
+    private final int[] linesBefore;
+    // the tokenizer reads front to back, so most lookups land in the last piece found
+    private int lastPiece;
+
+    // the source as it was tokenized, with the line starts the tokenizer found
+    EditedCharSequence(CharSequence source, int[] sourceLineStarts, int lineCount) {
+        this(new CharSequence[]{source}, new int[]{0}, new int[]{0, source.length()},
+                new int[][]{sourceLineStarts}, new int[]{1}, new int[]{lineCount}, new int[]{0, lineCount - 1});
+    }
+
+    private EditedCharSequence(CharSequence[] texts, int[] textStarts, int[] positions,
+                               int[][] lineStarts, int[] lineFrom, int[] lineTo, int[] linesBefore) {
+        this.texts = texts;
+        this.textStarts = textStarts;
+        this.positions = positions;
+        this.lineStarts = lineStarts;
+        this.lineFrom = lineFrom;
+        this.lineTo = lineTo;
+        this.linesBefore = linesBefore;
+    }
+
+    EditedCharSequence edit(int offset, int removedLength, String insertedText) {
+        int insertAt = pieceAt(offset);
+        Builder builder = new Builder(texts.length + 2);
+        for (int i = 0; i < texts.length; i++) {
+            // the parts of each piece before and after the removed range
+            builder.add(this, i, positions[i], Math.min(positions[i + 1], offset));
+            if (i == insertAt) {
+                builder.addInserted(insertedText);
+            }
+            builder.add(this, i, Math.max(positions[i], offset + removedLength), positions[i + 1]);
+        }
+        return builder.build();
+    }
+
+    @Override
+    public int length() {
+        return positions[texts.length];
+    }
+
+    @Override
+    public char charAt(int index) {
+        int piece = pieceAt(index);
+        return texts[piece].charAt(textStarts[piece] + index - positions[piece]);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        StringBuilder text = new StringBuilder(end - start);
+        for (int piece = pieceAt(start); piece < texts.length && positions[piece] < end; piece++) {
+            int from = Math.max(start, positions[piece]) - positions[piece] + textStarts[piece];
+            int to = Math.min(end, positions[piece + 1]) - positions[piece] + textStarts[piece];
+            text.append(texts[piece], from, to);
+        }
+        return text.toString();
+    }
+
+    @Override
+    public String toString() {
+        return subSequence(0, length()).toString();
+    }
+
+    int lineCount() {
+        return linesBefore[texts.length] + 1;
+    }
+
+    // 1-based line of a position
+    int lineOf(int position) {
+        int piece = pieceAt(Math.min(position, length() - 1));
+        int textPosition = position - positions[piece] + textStarts[piece];
+        int index = upperBound(lineStarts[piece], lineFrom[piece], lineTo[piece], textPosition);
+        return linesBefore[piece] + index - lineFrom[piece] + 1;
+    }
+
+    int lineStart(int line) {
+        if (line == 1) {
+            return 0;
+        }
+        // the (line - 1)th line start, found in the last piece with fewer before it
+        int nth = line - 2;
+        int piece = upperBound(linesBefore, 0, texts.length, nth) - 1;
+        int textPosition = lineStarts[piece][lineFrom[piece] + nth - linesBefore[piece]];
+        return textPosition - textStarts[piece] + positions[piece];
+    }
+
+    // the piece holding a position, the last one for the position just past the end
+    private int pieceAt(int index) {
+        if (index >= positions[lastPiece] && index < positions[lastPiece + 1]) {
+            return lastPiece;
+        }
+        int piece = Math.max(0, Math.min(upperBound(positions, 0, texts.length, index) - 1, texts.length - 1));
+        lastPiece = piece;
+        return piece;
+    }
+
+    // the first index in values[from .. to) holding more than value, to if there is none
+    private static int upperBound(int[] values, int from, int to, int value) {
+        int low = from;
+        int high = to;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (values[mid] <= value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static class Builder {
+        private CharSequence[] texts;
+        private int[] textStarts;
+        private int[] positions;
+        private int[][] lineStarts;
+        private int[] lineFrom;
+        private int[] lineTo;
+        private int[] linesBefore;
+        private int count;
+
+        Builder(int capacity) {
+            texts = new CharSequence[capacity];
+            textStarts = new int[capacity];
+            positions = new int[capacity + 1];
+            lineStarts = new int[capacity][];
+            lineFrom = new int[capacity];
+            lineTo = new int[capacity];
+            linesBefore = new int[capacity + 1];
+        }
+
+        // the part of a piece of the given sequence between two of its positions
+        void add(EditedCharSequence source, int piece, int start, int end) {
+            if (start >= end) {
+                return;
+            }
+            int textStart = start - source.positions[piece] + source.textStarts[piece];
+            int textEnd = end - source.positions[piece] + source.textStarts[piece];
+            int[] starts = source.lineStarts[piece];
+            // a line start belongs to the piece holding the newline before it
+            int from = upperBound(starts, source.lineFrom[piece], source.lineTo[piece], textStart);
+            int to = upperBound(starts, from, source.lineTo[piece], textEnd);
+            add(source.texts[piece], textStart, textEnd - textStart, starts, from, to);
+        }
+
+        void addInserted(String text) {
+            int[] starts = new int[0];
+            int lines = 0;
+            for (int i = 0; i < text.length(); i++) {
+                if (text.charAt(i) == '\n') {
+                    if (lines == starts.length) {
+                        starts = Arrays.copyOf(starts, Math.max(4, lines * 2));
+                    }
+                    starts[lines++] = i + 1;
+                }
+            }
+            if (!text.isEmpty()) {
+                add(text, 0, text.length(), starts, 0, lines);
+            }
+        }
+
+        private void add(CharSequence text, int textStart, int length, int[] starts, int from, int to) {
+            texts[count] = text;
+            textStarts[count] = textStart;
+            lineStarts[count] = starts;
+            lineFrom[count] = from;
+            lineTo[count] = to;
+            positions[count + 1] = positions[count] + length;
+            linesBefore[count + 1] = linesBefore[count] + to - from;
+            count++;
+        }
+
+        EditedCharSequence build() {
+            if (count == 0) {
+                // everything was removed, an empty piece keeps the lookups simple
+                add("", 0, 0, new int[0], 0, 0);
+            }
+            return new EditedCharSequence(Arrays.copyOf(texts, count), Arrays.copyOf(textStarts, count),
+                    Arrays.copyOf(positions, count + 1), Arrays.copyOf(lineStarts, count),
+                    Arrays.copyOf(lineFrom, count), Arrays.copyOf(lineTo, count),
+                    Arrays.copyOf(linesBefore, count + 1));
+        }
+    }
+}
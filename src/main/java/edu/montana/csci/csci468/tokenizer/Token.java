@@ -1,23 +1,27 @@
 package edu.montana.csci.csci468.tokenizer;
 
+// A token made on demand from a TokenList, for error reporting, /tokenize and tests.  Its
+// line is looked up the first time it is asked for.
 public class Token {
 
-    int start;
-    int end;
-    int line;
-    int lineOffset;
+    private final int start;
+    private final int end;
+    private int line;
+    private int lineOffset;
     String stringValue;
-    TokenType type;
-    private final CatScriptTokenizer tokenizer;
+    private final TokenType type;
+    private final TokenList tokens;
+    private final int index;
+    // the version of the source the position is in, for line lookups
+    private final TokenList lines;
 
-    public Token(int start, int end, int line, int lineOffset, String stringValue, TokenType type, CatScriptTokenizer tokenizer) {
+    Token(int start, int end, TokenType type, TokenList tokens, int index, TokenList lines) {
         this.start = start;
         this.end = end;
-        this.line = line;
-        this.lineOffset = lineOffset;
-        this.stringValue = stringValue;
         this.type = type;
-        this.tokenizer = tokenizer;
+        this.tokens = tokens;
+        this.index = index;
+        this.lines = lines;
     }
 
     public int getStart() {
@@ -29,14 +33,28 @@ public class Token {
     }
 
     public int getLine() {
+        if (line == 0) {
+            findLine();
+        }
         return line;
     }
 
     public int getLineOffset() {
+        if (line == 0) {
+            findLine();
+        }
         return lineOffset;
     }
 
+    void findLine() {
+        line = lines.lineOf(start);
+        lineOffset = start - lines.lineStart(line);
+    }
+
     public String getStringValue() {
+        if (stringValue == null) {
+            stringValue = tokens.getStringValue(index);
+        }
         return stringValue;
     }
 
@@ -46,17 +64,16 @@ public class Token {
 
     @Override
     public String toString() {
-        return "Token(\"" + stringValue + "\"){" +
+        return "Token(\"" + getStringValue() + "\"){" +
                 "type=" + type +
                 ", start=" + start +
                 ", end=" + end +
-                ", line=" + line +
-                ", offset=" + lineOffset +
+                ", line=" + getLine() +
+                ", offset=" + getLineOffset() +
                 '}';
     }
 
     public String getLineContent() {
-        String[] lines = tokenizer.src.split("\n");
-        return lines[line - 1];
+        return lines.getLineContent(getLine());
     }
 }
@@ -1,40 +1,246 @@
 package edu.montana.csci.csci468.tokenizer;
 
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Iterator;
-import java.util.List;
+import java.util.Map;
 import java.util.Spliterator;
 import java.util.function.Consumer;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 import static edu.montana.csci.csci468.tokenizer.TokenType.EOF;
 import static edu.montana.csci.csci468.tokenizer.TokenType.IDENTIFIER;
+import static edu.montana.csci.csci468.tokenizer.TokenType.STRING;
 
+// Tokens are stored column-wise in parallel arrays.  String values are cut from the
+// source only when asked for, and Token objects are only made when someone asks for
+// one (error reporting, /tokenize); the parser and parse elements work with indexes.
+//
+// Over a streaming tokenizer tokens are scanned as the parser reaches them and only the
+// last consumed token onwards is kept, so indexes before that are no longer available,
+// except for those retained by parse elements.  Values are cut eagerly there since the
+// source they come from is not kept either.
 public class TokenList implements Iterable<Token> {
 
+    private static final TokenType[] TOKEN_TYPES = TokenType.values();
+
     private final CatScriptTokenizer tokenizer;
-    List<Token> tokens = new ArrayList<>();
+    private int[] starts;
+    private int[] ends;
+    private byte[] types;
+    // values that are not a slice of the source, e.g. "<EOF>" and error messages
+    private final Map<Integer, String> syntheticValues = new HashMap<>();
+    // streaming only, the value of every buffered token
+    private String[] values;
+    // streaming only, tokens parse elements refer to, kept once they leave the buffer
+    private Map<Integer, Token> retained;
+    // index of the first buffered token, always 0 unless streaming
+    private int base;
+    private int size;
     int currentToken = 0;
 
     public TokenList(CatScriptTokenizer tokenizer) {
         this.tokenizer = tokenizer;
+        int capacity = tokenizer.isLazy() ? 16 : Math.max(16, tokenizer.src.length() / 4);
+        starts = new int[capacity];
+        ends = new int[capacity];
+        types = new byte[capacity];
+        if (tokenizer.isStreaming()) {
+            values = new String[capacity];
+            retained = new HashMap<>();
+        }
+    }
+
+    void addToken(TokenType type, int start, int end) {
+        addToken(type, null, start, end);
+    }
+
+    void addToken(TokenType type, String stringValue, int start, int end) {
+        if (size == types.length) {
+            makeRoom();
+        }
+        if (values != null) {
+            // string token spans include the closing quote, their values do not
+            values[size] = stringValue != null ? stringValue :
+                    tokenizer.text(start, type == STRING ? end - 1 : end);
+        } else if (stringValue != null) {
+            syntheticValues.put(size, stringValue);
+        }
+        starts[size] = start;
+        ends[size] = end;
+        types[size] = (byte) type.ordinal();
+        size++;
+    }
+
+    private void makeRoom() {
+        // when streaming, drop everything before the last consumed token first
+        int drop = values == null ? 0 : Math.max(0, currentToken - 1 - base);
+        if (drop > 0) {
+            size -= drop;
+            System.arraycopy(starts, drop, starts, 0, size);
+            System.arraycopy(ends, drop, ends, 0, size);
+            System.arraycopy(types, drop, types, 0, size);
+            System.arraycopy(values, drop, values, 0, size);
+            Arrays.fill(values, size, size + drop, null);
+            base += drop;
+            // the line index only needs to reach back to the oldest buffered token
+            tokenizer.dropLinesBefore(starts[0]);
+        }
+        if (size == types.length) {
+            int capacity = size * 2;
+            starts = Arrays.copyOf(starts, capacity);
+            ends = Arrays.copyOf(ends, capacity);
+            types = Arrays.copyOf(types, capacity);
+            if (values != null) {
+                values = Arrays.copyOf(values, capacity);
+            }
+        }
+    }
+
+    // scans ahead (streaming or edited sources) until the token at index is buffered
+    private boolean ensureScanned(int index) {
+        if (!tokenizer.isLazy()) {
+            return index < size;
+        }
+        while (index >= base + size) {
+            if (!tokenizer.scanNextToken() && index >= base + size) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // maps a token index onto its position in the arrays
+    private int slot(int index) {
+        if (index < base) {
+            throw new IllegalStateException("Token " + index + " has already been discarded by the streaming tokenizer");
+        }
+        if (!ensureScanned(index)) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + (base + size));
+        }
+        return index - base;
+    }
+
+    // the number of tokens scanned so far, for a streaming list this grows as it is read
+    public int size() {
+        return base + size;
+    }
+
+    public TokenType getType(int index) {
+        Token token = retainedToken(index);
+        if (token != null) {
+            return token.getType();
+        }
+        // slot() may scan and grow the arrays, so look it up before touching them
+        int slot = slot(index);
+        return TOKEN_TYPES[types[slot]];
+    }
+
+    public Token get(int index) {
+        return get(index, 0, this);
+    }
+
+    // The token as it sits shift characters further on in a later version of the source,
+    // whose lines are those of the given list (see CatScriptParser.reparse).
+    public Token get(int index, int shift, TokenList lines) {
+        Token retainedToken = retainedToken(index);
+        if (retainedToken != null) {
+            return retainedToken;
+        }
+        int slot = slot(index);
+        Token token = new Token(starts[slot] + shift, ends[slot] + shift, TOKEN_TYPES[types[slot]], this, index, lines);
+        if (values != null) {
+            // the value and line are gone once the token leaves the buffer
+            token.stringValue = values[slot];
+            token.findLine();
+        }
+        return token;
+    }
+
+    // Called for every token a parse element refers to, so that a streaming list can still
+    // make it once it has been discarded.  A list over an in-memory source keeps everything.
+    public void retain(int index) {
+        if (retained != null && !retained.containsKey(index)) {
+            retained.put(index, get(index));
+        }
+    }
+
+    // streaming only, a token that has left the buffer but is still referred to
+    private Token retainedToken(int index) {
+        return retained != null && index < base ? retained.get(index) : null;
+    }
+
+    // where the token starts in the source it was scanned from
+    public int getStart(int index) {
+        Token token = retainedToken(index);
+        if (token != null) {
+            return token.getStart();
+        }
+        return starts[slot(index)];
+    }
+
+    public String getStringValue(int index) {
+        Token token = retainedToken(index);
+        if (token != null) {
+            return token.getStringValue();
+        }
+        int slot = slot(index);
+        if (values != null) {
+            return values[slot];
+        }
+        String synthetic = syntheticValues.get(index);
+        if (synthetic != null) {
+            return synthetic;
+        }
+        // string token spans include the closing quote, their values do not
+        int end = types[slot] == STRING.ordinal() ? ends[slot] - 1 : ends[slot];
+        return tokenizer.text(starts[slot], end);
+    }
+
+    // null when streaming, the source lines are not kept
+    String getLineContent(int line) {
+        return tokenizer.lineContent(line);
     }
 
-    void addToken(TokenType eof, String stringValue, int start, int end, int line, int lineOffset) {
-        tokens.add(new Token(start, end, line, lineOffset - (end - start), stringValue, eof, tokenizer));
+    int lineOf(int position) {
+        return tokenizer.lineOf(position);
+    }
+
+    int lineStart(int line) {
+        return tokenizer.lineStart(line);
+    }
+
+    public CatScriptTokenizer getTokenizer() {
+        return tokenizer;
     }
 
     public Token getCurrentToken() {
-        return tokens.get(currentToken);
+        return get(currentToken);
     }
 
     public Token consumeToken() {
-        return tokens.get(currentToken++);
+        return get(currentToken++);
+    }
+
+    public int getCurrentIndex() {
+        return currentToken;
+    }
+
+    // consumes the current token, returning its index
+    public int consumeIndex() {
+        // make sure it is scanned, as consumeToken would
+        slot(currentToken);
+        return currentToken++;
+    }
+
+    public int lastIndex() {
+        return Math.max(0, currentToken - 1);
     }
 
     public boolean matchAndConsume(TokenType... type) {
         if (match(type)) {
-            consumeToken();
+            currentToken++;
             return true;
         } else {
             return false;
@@ -42,17 +248,28 @@ public class TokenList implements Iterable<Token> {
     }
 
     public boolean match(String identifier) {
-        if (getCurrentToken().getType().equals(IDENTIFIER) &&
-            getCurrentToken().getStringValue().equals(identifier)) {
+        if (getType(currentToken) != IDENTIFIER) {
+            return false;
+        }
+        int slot = currentToken - base;
+        if (ends[slot] - starts[slot] == identifier.length() &&
+            (values != null ? values[slot].equals(identifier) : tokenizer.regionMatches(starts[slot], identifier))) {
             return true;
         } else {
             return false;
         }
     }
 
+    // the type of the token n past the current one, EOF past the end
+    public TokenType lookAhead(int n) {
+        int index = currentToken + n;
+        return ensureScanned(index) ? getType(index) : EOF;
+    }
+
     public boolean match(TokenType... type) {
+        TokenType currentType = getType(currentToken);
         for (TokenType tokenType : type) {
-            if (getCurrentToken().getType().equals(tokenType)) {
+            if (currentType == tokenType) {
                 return true;
             }
         }
@@ -60,45 +277,50 @@ public class TokenList implements Iterable<Token> {
     }
 
     public void reset() {
+        if (base > 0) {
+            throw new IllegalStateException("A streaming token list can not be reset");
+        }
         currentToken = 0;
     }
 
     public boolean hasMoreTokens() {
-        return currentToken < tokens.size() - 1;
+        return ensureScanned(currentToken) && types[currentToken - base] != EOF.ordinal();
     }
 
     public Token lastToken() {
-        return tokens.get(Math.max(0, currentToken - 1));
+        return get(lastIndex());
     }
 
+    // for a streaming list, the tokens from the last consumed one to EOF
     public Stream<Token> stream() {
-        return tokens.stream();
+        while (ensureScanned(base + size)) {
+        }
+        return IntStream.range(base, base + size).mapToObj(this::get);
     }
 
     @Override
     public Iterator<Token> iterator() {
-        return tokens.iterator();
+        return stream().iterator();
     }
 
     @Override
     public void forEach(Consumer action) {
-        tokens.forEach(action);
+        stream().forEach(action);
     }
 
     @Override
     public Spliterator<Token> spliterator() {
-        return tokens.spliterator();
+        return stream().spliterator();
     }
 
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
-        for (int i = 0; i < tokens.size(); i++) {
-            Token token = tokens.get(i);
+        for (int i = base; i < base + size; i++) {
             if (i == currentToken) {
                 sb.append("-->[");
             }
-            sb.append(token.getStringValue());
+            sb.append(getStringValue(i));
             if (i == currentToken) {
                 sb.append("]<--");
             }
@@ -40,5 +40,22 @@ public enum TokenType {
         KEYWORDS.put("var", VAR);
     }
 
+    // the source text of an operator, which expressions keep instead of their operator token
+    public String getSymbol() {
+        switch (this) {
+            case MINUS: return "-";
+            case PLUS: return "+";
+            case SLASH: return "/";
+            case STAR: return "*";
+            case BANG_EQUAL: return "!=";
+            case EQUAL_EQUAL: return "==";
+            case GREATER: return ">";
+            case GREATER_EQUAL: return ">=";
+            case LESS: return "<";
+            case LESS_EQUAL: return "<=";
+            case NOT: return "not";
+            default: throw new IllegalStateException(this + " is not an operator");
+        }
+    }
 
 }
@@ -0,0 +1,191 @@
+package edu.montana.csci.csci468.bytecode;
+
+import edu.montana.csci.csci468.CatscriptTestBase;
+import edu.montana.csci.csci468.parser.CatScriptParser;
+import edu.montana.csci.csci468.parser.statements.CatScriptProgram;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ByteCodeGeneratorTest extends CatscriptTestBase {
+
+    @Test
+    void eachProgramGetsItsOwnClassLoader() {
+        Class<? extends CatScriptProgram> first = compileToClass("print(1)");
+        Class<? extends CatScriptProgram> second = compileToClass("print(1)");
+        assertNotSame(first.getClassLoader(), second.getClassLoader());
+        assertSame(CatScriptProgram.class, first.getSuperclass());
+        assertTrue(ByteCodeGenerator.getLiveProgramClassCount() >= 2);
+    }
+
+    @Test
+    void diagnosticsAreOffByDefault() {
+        assertFalse(ByteCodeGenerator.getDiagnostics().isEnabled());
+    }
+
+    @Test
+    void diagnosticsCanDumpASampleOfClassesToADirectory(@TempDir Path dir) throws IOException {
+        BytecodeDiagnostics previous = ByteCodeGenerator.getDiagnostics();
+        ByteCodeGenerator.setDiagnostics(BytecodeDiagnostics.toDirectory(dir).sampleEvery(2));
+        try {
+            compileToClass("print(1)");
+            compileToClass("print(2)");
+            compileToClass("print(3)");
+        } finally {
+            ByteCodeGenerator.setDiagnostics(previous);
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            assertEquals(2, files.count());
+        }
+    }
+
+    @Test
+    void stringChainsCompileToOneConcatenation(@TempDir Path dir) throws IOException {
+        String src = "var x = 1\nvar b = true\nprint(\"a\" + x + \"b\" + b + (\"c\" + null) + [1])";
+        CatScriptProgram program = ByteCodeGenerator.newInstance(compileToClass(src));
+        program.execute();
+        assertEquals("a1btruecnull[1]\n", program.getOutput());
+
+        String listing = listingOf(src, dir);
+        assertTrue(listing.contains("// class version 55.0"));
+        assertEquals(1, listing.split("INVOKEDYNAMIC makeConcatWithConstants", -1).length - 1);
+    }
+
+    @Test
+    void intsAndBoolsArePassedUnboxed(@TempDir Path dir) throws IOException {
+        String src = "function fib(n : int) : int {\n" +
+                "  if (n < 2) { return n }\n" +
+                "  return fib(n - 1) + fib(n - 2)\n" +
+                "}\n" +
+                "function negate(b : bool) : bool { return not b }\n" +
+                "print(fib(20))\n" +
+                "print(negate(false))";
+        CatScriptProgram program = ByteCodeGenerator.newInstance(compileToClass(src));
+        program.execute();
+        assertEquals("6765\ntrue\n", program.getOutput());
+
+        String listing = listingOf(src, dir);
+        String fib = listing.substring(listing.indexOf("fib(I)I"), listing.indexOf("negate(Z)Z"));
+        assertFalse(fib.contains("valueOf"));
+    }
+
+    @Test
+    void siblingBlocksReuseLocalSlots(@TempDir Path dir) throws IOException {
+        String src = "function f(xs : list<int>) {\n" +
+                "  for (x in xs) { var y = x\n print(y) }\n" +
+                "  for (x in xs) { var z = x\n print(z) }\n" +
+                "  if (xs == null) { var a = 1\n print(a) } else { var b = 2\n print(b) }\n" +
+                "}\n" +
+                "f([1, 2])";
+        CatScriptProgram program = ByteCodeGenerator.newInstance(compileToClass(src));
+        program.execute();
+        assertEquals("1\n2\n1\n2\n2\n", program.getOutput());
+
+        // this, xs, then the list, index, x and y of one loop at a time
+        String listing = listingOf(src, dir);
+        String f = listing.substring(listing.indexOf("f(Ljava/util/List;)V"));
+        assertTrue(f.contains("MAXLOCALS = 6\n"), f);
+    }
+
+    @Test
+    void loopsIndexRandomAccessListsAndIterateOthers() throws Exception {
+        Class<? extends CatScriptProgram> programClass = compileToClass(
+                "function f(xs : list<string>) { for (x in xs) { print(x) } }\n" +
+                "f([\"a\", \"b\"])");
+        CatScriptProgram program = ByteCodeGenerator.newInstance(programClass);
+        program.execute();
+        programClass.getMethod("f", List.class).invoke(program, new LinkedList<>(List.of("c", "d")));
+        assertEquals("a\nb\nc\nd\n", program.getOutput());
+    }
+
+    @Test
+    void longProgramsAreSplitIntoSeveralMethods() {
+        // well past the 64KB a single method can hold
+        StringBuilder src = new StringBuilder("var x = 1\n");
+        for (int i = 0; i < 8000; i++) {
+            src.append("print(x)\n");
+        }
+        Class<? extends CatScriptProgram> programClass = compileToClass(src.toString());
+        long parts = Stream.of(programClass.getDeclaredMethods())
+                .filter(method -> method.getName().startsWith("execute$"))
+                .count();
+        assertTrue(parts > 16, "split into " + parts);
+
+        CatScriptProgram program = ByteCodeGenerator.newInstance(programClass);
+        program.execute();
+        assertEquals("1\n".repeat(8000), program.getOutput());
+    }
+
+    @Test
+    void statementsTooLongForAMethodAreReported() {
+        // only top-level code is split, and only between statements
+        String loop = "var x = 1\nfor (i in [1]) {\n" + "print(x)\n".repeat(8000) + "}\n";
+        IllegalStateException exception = assertThrows(IllegalStateException.class, () -> compileToClass(loop));
+        assertTrue(exception.getMessage().startsWith("A top-level statement is too long to compile"), exception.getMessage());
+
+        String function = "function big(x : int) {\n" + "print(x)\n".repeat(10000) + "}\nbig(1)\n";
+        exception = assertThrows(IllegalStateException.class, () -> compileToClass(function));
+        assertTrue(exception.getMessage().startsWith("Function big is too long to compile"), exception.getMessage());
+    }
+
+    @Test
+    void longStringChainsAreSplitAcrossConcatenations() {
+        StringBuilder src = new StringBuilder("var x = 1\nprint(\"\"");
+        for (int i = 0; i < 450; i++) {
+            src.append(" + x");
+        }
+        src.append(")");
+        CatScriptProgram program = ByteCodeGenerator.newInstance(compileToClass(src.toString()));
+        program.execute();
+        assertEquals("1".repeat(450) + "\n", program.getOutput());
+    }
+
+    @Test
+    void constantConditionsArePrunedOnlyWhenOptimizing(@TempDir Path dir) throws IOException {
+        String src = "if (false) { print(\"dead\") } else { print(\"live\") }";
+        assertFalse(listingOf(src, dir.resolve("optimized")).contains("dead"));
+
+        CatScriptProgram unoptimized = new CatScriptParser().parse(src);
+        unoptimized.verify();
+        unoptimized.setOptimize(false);
+        assertTrue(listingOf(unoptimized, dir.resolve("unoptimized")).contains("dead"));
+
+        CatScriptProgram program = ByteCodeGenerator.newInstance(new ByteCodeGenerator(unoptimized).compileToClass());
+        program.execute();
+        assertEquals("live\n", program.getOutput());
+    }
+
+    private String listingOf(String src, Path dir) throws IOException {
+        CatScriptProgram program = new CatScriptParser().parse(src);
+        program.verify();
+        return listingOf(program, dir);
+    }
+
+    private String listingOf(CatScriptProgram program, Path dir) throws IOException {
+        BytecodeDiagnostics previous = ByteCodeGenerator.getDiagnostics();
+        ByteCodeGenerator.setDiagnostics(BytecodeDiagnostics.toDirectory(dir));
+        try {
+            new ByteCodeGenerator(program).compileToClass();
+        } finally {
+            ByteCodeGenerator.setDiagnostics(previous);
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            return Files.readString(files.findFirst().get());
+        }
+    }
+
+    private Class<? extends CatScriptProgram> compileToClass(String src) {
+        CatScriptProgram program = new CatScriptParser().parse(src);
+        program.verify();
+        return new ByteCodeGenerator(program).compileToClass();
+    }
+
+}
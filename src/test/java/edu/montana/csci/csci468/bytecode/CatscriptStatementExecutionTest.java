@@ -58,6 +58,15 @@ public class CatscriptStatementExecutionTest extends CatscriptTestBase {
         assertEquals("1\n2\n3\n", compile("for(x in [1, 2, 3]) { print(x) }"));
     }
 
+    @Test
+    void intAndBoolListsAreLoopedOverUnboxed() {
+        assertEquals("2\n4\n6\ntrue\nfalse\n", compile("function doubled(xs : list<int>) {\n" +
+                "  for(x in xs) { print(x * 2) }\n" +
+                "}\n" +
+                "doubled([1, 2, 3])\n" +
+                "for(b in [true, false]) { print(b) }"));
+    }
+
     @Test
     void functionDeclarationWorksProperly() {
         assertEquals("1\n2\n3\n", compile("function foo(x) { print(x) }\n" +
@@ -90,5 +99,16 @@ public class CatscriptStatementExecutionTest extends CatscriptTestBase {
         ));
     }
 
+    @Test
+    void unusedReturnValuesAndBoolLoopsVerify() {
+        assertEquals("true\nfalse\n", compile(
+                "function foo(x : bool) : int {\n" +
+                        "print(x)\n" +
+                        "return 1" +
+                "}\n" +
+                "for (b in [true, false]) { foo(b) }"
+        ));
+    }
+
 
 }
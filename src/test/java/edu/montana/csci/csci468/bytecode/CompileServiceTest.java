@@ -0,0 +1,142 @@
+package edu.montana.csci.csci468.bytecode;
+
+import edu.montana.csci.csci468.CatscriptTestBase;
+import edu.montana.csci.csci468.parser.ParseErrorException;
+import edu.montana.csci.csci468.parser.statements.CatScriptProgram;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CompileServiceTest extends CatscriptTestBase {
+
+    @Test
+    void programsAreInterpretedUntilCompiled() {
+        ManualExecutor executor = new ManualExecutor(4);
+        CompileService service = new CompileService(new CompiledProgramCache(4), executor);
+        String src = "var x = 1\nprint(x + 1)";
+
+        CatScriptProgram first = service.getProgram(src);
+        CatScriptProgram second = service.getProgram(src);
+        assertSame(CatScriptProgram.class, first.getClass());
+        assertSame(CatScriptProgram.class, second.getClass());
+        // both requests share the one compile
+        assertEquals(1, executor.tasks.size());
+        assertEquals(1, service.getInFlightCount());
+
+        executor.runAll();
+        CatScriptProgram compiled = service.getProgram(src);
+        assertNotSame(CatScriptProgram.class, compiled.getClass());
+        assertEquals(0, service.getInFlightCount());
+        assertEquals(2, service.getInterpretedCount());
+
+        first.execute();
+        compiled.execute();
+        assertEquals("2\n", first.getOutput());
+        assertEquals("2\n", compiled.getOutput());
+    }
+
+    @Test
+    void compileCompletesOnTheServiceThreads() throws Exception {
+        try (CompileService service = new CompileService(new CompiledProgramCache(4), 2, 8)) {
+            CatScriptProgram program = service.compile("print(\"hello\")").get(10, TimeUnit.SECONDS);
+            program.execute();
+            assertEquals("hello\n", program.getOutput());
+        }
+    }
+
+    @Test
+    void fullQueueRejectsAndFallsBackToTheInterpreter() {
+        CompileService service = new CompileService(new CompiledProgramCache(4), new ManualExecutor(1));
+        service.compileClass("print(1)");
+        CompletableFuture<Class<? extends CatScriptProgram>> rejected = service.compileClass("print(2)");
+        CompletionException exception = assertThrows(CompletionException.class, rejected::join);
+        assertTrue(exception.getCause() instanceof RejectedExecutionException);
+        assertEquals(1, service.getRejectedCount());
+
+        CatScriptProgram program = service.getProgram("print(3)");
+        program.execute();
+        assertEquals("3\n", program.getOutput());
+    }
+
+    @Test
+    void parseErrorsFailTheCompile() {
+        ManualExecutor executor = new ManualExecutor(4);
+        CompileService service = new CompileService(new CompiledProgramCache(4), executor);
+        CompletableFuture<Class<? extends CatScriptProgram>> compile = service.compileClass("print(x)");
+        executor.runAll();
+        CompletionException exception = assertThrows(CompletionException.class, compile::join);
+        assertTrue(exception.getCause() instanceof ParseErrorException);
+        assertThrows(ParseErrorException.class, () -> service.getProgram("print(x)"));
+    }
+
+    @Test
+    void programsWithErrorsAreNotQueued() {
+        ManualExecutor executor = new ManualExecutor(1);
+        CompileService service = new CompileService(new CompiledProgramCache(4), executor);
+        for (int i = 0; i < 3; i++) {
+            assertThrows(ParseErrorException.class, () -> service.getProgram("print(x)"));
+        }
+        assertTrue(executor.tasks.isEmpty());
+        assertEquals(0, service.getInterpretedCount());
+
+        service.getProgram("print(1)");
+        assertEquals(1, executor.tasks.size());
+        assertEquals(0, service.getRejectedCount());
+    }
+
+    // queues tasks until the test runs them, rejecting beyond its capacity
+    private static class ManualExecutor extends AbstractExecutorService {
+        private final int capacity;
+        private final List<Runnable> tasks = new ArrayList<>();
+
+        private ManualExecutor(int capacity) {
+            this.capacity = capacity;
+        }
+
+        private void runAll() {
+            List<Runnable> pending = new ArrayList<>(tasks);
+            tasks.clear();
+            pending.forEach(Runnable::run);
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            if (tasks.size() >= capacity) {
+                throw new RejectedExecutionException();
+            }
+            tasks.add(command);
+        }
+
+        @Override
+        public void shutdown() {
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return tasks;
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return false;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return false;
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) {
+            return true;
+        }
+    }
+}
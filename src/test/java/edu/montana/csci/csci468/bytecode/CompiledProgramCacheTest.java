@@ -0,0 +1,53 @@
+package edu.montana.csci.csci468.bytecode;
+
+import edu.montana.csci.csci468.CatscriptTestBase;
+import edu.montana.csci.csci468.parser.ParseErrorException;
+import edu.montana.csci.csci468.parser.statements.CatScriptProgram;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CompiledProgramCacheTest extends CatscriptTestBase {
+
+    @Test
+    void sameSourceReusesCompiledClass() {
+        CompiledProgramCache cache = new CompiledProgramCache(4);
+        String src = "var x = 1\nprint(x)";
+        CatScriptProgram first = cache.instantiate(src);
+        CatScriptProgram second = cache.instantiate(src);
+        assertSame(first.getClass(), second.getClass());
+        assertNotSame(first, second);
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getHits());
+
+        first.execute();
+        second.execute();
+        assertEquals("1\n", first.getOutput());
+        assertEquals("1\n", second.getOutput());
+    }
+
+    @Test
+    void leastRecentlyUsedEntryIsEvicted() {
+        CompiledProgramCache cache = new CompiledProgramCache(2);
+        cache.getProgramClass("print(1)");
+        cache.getProgramClass("print(2)");
+        cache.getProgramClass("print(1)");
+        cache.getProgramClass("print(3)");
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictions());
+
+        // print(1) was used most recently, so print(2) was the one dropped
+        cache.getProgramClass("print(1)");
+        assertEquals(2, cache.getHits());
+        cache.getProgramClass("print(2)");
+        assertEquals(4, cache.getMisses());
+    }
+
+    @Test
+    void parseErrorsAreNotCached() {
+        CompiledProgramCache cache = new CompiledProgramCache(2);
+        assertThrows(ParseErrorException.class, () -> cache.getProgramClass("print(x)"));
+        assertEquals(0, cache.size());
+    }
+
+}
@@ -0,0 +1,68 @@
+package edu.montana.csci.csci468.bytecode;
+
+import edu.montana.csci.csci468.CatscriptTestBase;
+import edu.montana.csci.csci468.parser.statements.CatScriptProgram;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CompiledProgramWriterTest extends CatscriptTestBase {
+
+    private static final String FIB = "function fib(n : int) : int {\n" +
+            "  if (n < 2) { return n }\n" +
+            "  return fib(n - 1) + fib(n - 2)\n" +
+            "}\n" +
+            "for (x in [1, 2, 3]) { print(fib(x * 5)) }";
+
+    @Test
+    void classNamesAreDerivedFromTheSource() {
+        assertEquals(CompiledProgramWriter.classNameFor("print(1)"), CompiledProgramWriter.classNameFor("print(1)"));
+        assertNotEquals(CompiledProgramWriter.classNameFor("print(1)"), CompiledProgramWriter.classNameFor("print(2)"));
+    }
+
+    @Test
+    void scriptsWrittenToADirectoryCanBeLoadedAndRun(@TempDir Path dir) throws IOException {
+        List<String> written = CompiledProgramWriter.writeToDirectory(dir, List.of(FIB, "print(\"hello\")", FIB));
+        assertEquals(2, written.size());
+        assertTrue(Files.exists(dir.resolve(written.get(0).replace('.', '/') + ".class")));
+
+        try (CompiledProgramLoader loader = new CompiledProgramLoader(dir)) {
+            CatScriptProgram program = loader.instantiate(FIB);
+            assertNotSame(CatScriptProgram.class, program.getClass());
+            program.execute();
+            assertEquals("5\n55\n610\n", program.getOutput());
+        }
+    }
+
+    @Test
+    void scriptsWrittenToAJarCanBeLoadedAndRun(@TempDir Path dir) throws IOException {
+        Path jar = dir.resolve("scripts.jar");
+        CompiledProgramWriter.writeToJar(jar, List.of("var x = 2\nprint(x * 21)"));
+
+        try (CompiledProgramLoader loader = new CompiledProgramLoader(jar)) {
+            CatScriptProgram program = loader.instantiate("var x = 2\nprint(x * 21)");
+            program.execute();
+            assertEquals("42\n", program.getOutput());
+            assertNull(loader.instantiate("print(1)"));
+        }
+    }
+
+    @Test
+    void classesFromAnotherFormatVersionAreMisses(@TempDir Path dir) throws IOException {
+        assertTrue(CompiledProgramWriter.classNameFor("print(1)").contains("_v" + CompiledProgramWriter.FORMAT_VERSION + "_"));
+        CompiledProgramWriter.writeToDirectory(dir, List.of("print(1)"));
+        Path manifest = dir.resolve("META-INF/MANIFEST.MF");
+        Files.writeString(manifest, Files.readString(manifest).replace(
+                "CatScript-Format-Version: " + CompiledProgramWriter.FORMAT_VERSION, "CatScript-Format-Version: 1"));
+
+        try (CompiledProgramLoader loader = new CompiledProgramLoader(dir)) {
+            assertNull(loader.instantiate("print(1)"));
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package edu.montana.csci.csci468.bytecode;
+
+import edu.montana.csci.csci468.CatscriptTestBase;
+import edu.montana.csci.csci468.parser.CatScriptParser;
+import edu.montana.csci.csci468.parser.statements.CatScriptProgram;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ScriptBatchTest extends CatscriptTestBase {
+
+    private static CatScriptProgram parse(String source) {
+        CatScriptProgram program = new CatScriptParser().parse(source);
+        program.verify();
+        return program;
+    }
+
+    @Test
+    void scriptsShareOneClassAndKeepTheirOwnGlobalsAndFunctions() {
+        List<CatScriptProgram> programs = List.of(
+                parse("var x = 1\nfunction f(n : int) : int { return n + x }\nprint(f(1))"),
+                parse("var x = \"a\"\nfunction f(s : string) : string { return s + x }\nprint(f(\"b\"))"),
+                parse("1 + 2"));
+        ScriptBatch batch = ScriptBatch.compile(programs);
+        assertEquals(3, batch.size());
+        assertEquals(1, batch.getClassCount());
+        assertSame(batch.newInstance(0).getClass(), batch.newInstance(2).getClass());
+        // the globals of the scripts are not fields of the shared class
+        assertEquals(3, batch.newInstance(0).getClass().getDeclaredFields().length);
+
+        String[] expected = {"2\n", "ba\n", "3\n"};
+        for (int i = 0; i < batch.size(); i++) {
+            CatScriptProgram program = batch.newInstance(i);
+            program.execute();
+            assertEquals(expected[i], program.getOutput());
+        }
+    }
+
+    @Test
+    void largeBatchesAreSpreadOverSeveralClasses() {
+        List<CatScriptProgram> programs = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            programs.add(parse("var x = " + i + "\nprint(x * 2)"));
+        }
+        // a tiny constant pool budget, so each class fills up after a few scripts
+        ScriptBatch batch = ScriptBatch.compile(programs, 60);
+        assertTrue(batch.getClassCount() > 2);
+        assertTrue(batch.getClassCount() < 25);
+        assertNotSame(batch.newInstance(0).getClass(), batch.newInstance(24).getClass());
+
+        for (int i = 0; i < 25; i++) {
+            CatScriptProgram program = batch.newInstance(i);
+            program.execute();
+            assertEquals(i * 2 + "\n", program.getOutput());
+        }
+        assertThrows(IndexOutOfBoundsException.class, () -> batch.newInstance(25));
+    }
+
+    @Test
+    void emptyBatchesAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> ScriptBatch.compile(List.of()));
+        assertThrows(IllegalArgumentException.class, () -> ByteCodeGenerator.compileBatchToClass(List.of()));
+    }
+}
@@ -0,0 +1,150 @@
+package edu.montana.csci.csci468.bytecode;
+
+import edu.montana.csci.csci468.CatscriptTestBase;
+import edu.montana.csci.csci468.eval.CatscriptRuntime;
+import edu.montana.csci.csci468.parser.CatScriptParser;
+import edu.montana.csci.csci468.parser.statements.CatScriptProgram;
+import edu.montana.csci.csci468.parser.statements.FunctionDefinitionStatement;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TieredExecutionTest extends CatscriptTestBase {
+
+    private CatScriptProgram run(String source, int compileThreshold) {
+        CatScriptProgram program = new CatScriptParser().parse(source);
+        program.verify();
+        program.setCompileThreshold(compileThreshold);
+        program.execute();
+        return program;
+    }
+
+    @Test
+    void hotFunctionsAreCompiled() {
+        String source = "function fib(n : int) : int {\n" +
+                "  if (n < 2) { return n }\n" +
+                "  return fib(n - 1) + fib(n - 2)\n" +
+                "}\n" +
+                "function isSmall(n : int) : bool { return n < 100 }\n" +
+                "print(fib(15))\n" +
+                "print(isSmall(fib(10)))\n";
+        CatScriptProgram tiered = run(source, 10);
+        CatScriptProgram interpreted = run(source, -1);
+
+        assertEquals("610\ntrue\n", interpreted.getOutput());
+        assertEquals(interpreted.getOutput(), tiered.getOutput());
+        assertTrue(tiered.getFunction("fib").isCompiled());
+        assertFalse(tiered.getFunction("isSmall").isCompiled());
+        assertFalse(interpreted.getFunction("fib").isCompiled());
+    }
+
+    @Test
+    void loopsCountTowardsTheThreshold() {
+        CatScriptProgram program = run("function count(xs : list<int>) {\n" +
+                "  for (x in xs) { print(x) }\n" +
+                "}\n" +
+                "count([1, 2, 3])\n" +
+                "count([4])\n", 3);
+        assertEquals("1\n2\n3\n4\n", program.getOutput());
+        assertTrue(program.getFunction("count").isCompiled());
+    }
+
+    @Test
+    void functionsUsingGlobalsStayInterpreted() {
+        CatScriptProgram program = run("var y = 1\n" +
+                "function addY(x : int) : int { return x + y }\n" +
+                "for (i in [1, 2, 3]) { print(addY(i)) }\n", 1);
+        assertEquals("2\n3\n4\n", program.getOutput());
+        assertFalse(program.getFunction("addY").isCompiled());
+    }
+
+    @Test
+    void failedCompilesAreCountedAndStayInterpreted() {
+        BytecodeDiagnostics diagnostics = ByteCodeGenerator.getDiagnostics();
+        long failures = diagnostics.getFailedFunctionCompiles();
+        // too long for a single JVM method
+        CatScriptProgram program = run("function big(x : int) {\n" +
+                "  print(x + 1)\n".repeat(8000) +
+                "}\n" +
+                "big(1)\n", 1);
+        assertEquals("2\n".repeat(8000), program.getOutput());
+        assertFalse(program.getFunction("big").isCompiled());
+        assertEquals(failures + 1, diagnostics.getFailedFunctionCompiles());
+    }
+
+    @Test
+    void aNegativeThresholdSkipsCodeCompiledByAnEarlierRun() {
+        CatScriptProgram program = run("function twice(x : int) : int {\n" +
+                "  var y = x * 2\n" +
+                "  return y\n" +
+                "}\n" +
+                "print(twice(1))\n", 1);
+        FunctionDefinitionStatement twice = program.getFunction("twice");
+        assertTrue(twice.isCompiled());
+
+        // an interpreter frame has room for the local as well as the parameter
+        CatscriptRuntime runtime = new CatscriptRuntime();
+        Object[] frame = twice.allocateFrame(runtime);
+        assertEquals(2, frame.length);
+        frame[0] = 21;
+        assertEquals(42, twice.invoke(runtime, frame));
+    }
+
+    @Test
+    void compiledFunctionsPrintToTheProgramRunningThemAfterAReparse() {
+        String source = "function f(n : int) { print(n) }\nf(1)\nf(2)\nprint(9)";
+        CatScriptParser parser = new CatScriptParser();
+        CatScriptProgram previous = parser.parse(source);
+        previous.verify();
+        previous.setCompileThreshold(1);
+        previous.execute();
+        assertTrue(previous.getFunction("f").isCompiled());
+        assertEquals("1\n2\n9\n", previous.getOutput());
+
+        CatScriptProgram program = parser.reparse(previous, source.indexOf('9'), 1, "7");
+        program.verify();
+        program.setCompileThreshold(1);
+        program.execute();
+        assertTrue(program.getFunction("f").isCompiled());
+        assertEquals("1\n2\n7\n", program.getOutput());
+        assertEquals("1\n2\n9\n", previous.getOutput());
+    }
+
+    @Test
+    void callsFromSeveralThreadsAreAllCounted() throws Exception {
+        CatScriptProgram program = run("function twice(x : int) : int { return x * 2 }\n" +
+                "print(twice(1))\n", -1);
+        FunctionDefinitionStatement twice = program.getFunction("twice");
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> runs = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                runs.add(executor.submit(() -> {
+                    CatscriptRuntime runtime = new CatscriptRuntime();
+                    runtime.setCompileThreshold(8000);
+                    for (int call = 0; call < 1000; call++) {
+                        Object[] frame = twice.allocateFrame(runtime);
+                        frame[0] = call;
+                        assertEquals(call * 2, twice.invoke(runtime, frame));
+                    }
+                }));
+            }
+            for (Future<?> run : runs) {
+                run.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        // the 8000th call, whichever thread made it, compiled the function
+        assertTrue(twice.isCompiled());
+    }
+
+}
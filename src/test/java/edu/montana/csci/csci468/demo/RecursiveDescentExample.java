@@ -11,7 +11,7 @@ public class RecursiveDescentExample {
         if (currentTokenIs("==")) {
             Token t = consumeToken();
             Expression rhsExpression = parseEqualityExpression();
-            return new EqualityExpression(t, lhsExpression, rhsExpression);
+            return new EqualityExpression(t.getType(), lhsExpression, rhsExpression);
         } else {
             return lhsExpression;
         }
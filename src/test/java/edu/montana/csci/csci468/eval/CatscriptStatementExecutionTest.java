@@ -1,12 +1,26 @@
 package edu.montana.csci.csci468.eval;
 
 import edu.montana.csci.csci468.CatscriptTestBase;
+import edu.montana.csci.csci468.parser.CatScriptParser;
+import edu.montana.csci.csci468.parser.expressions.AdditiveExpression;
+import edu.montana.csci.csci468.parser.statements.CatScriptProgram;
+import edu.montana.csci.csci468.parser.statements.IfStatement;
+import edu.montana.csci.csci468.parser.statements.PrintStatement;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Arrays;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class CatscriptStatementExecutionTest extends CatscriptTestBase {
 
@@ -61,6 +75,17 @@ public class CatscriptStatementExecutionTest extends CatscriptTestBase {
         assertEquals("1\n2\n3\n", executeProgram("for(x in [1, 2, 3]) { print(x) }"));
     }
 
+    @Test
+    void intAndBoolListsAreStoredUnboxed() {
+        assertTrue(evaluateExpression("[1, 2, 3]") instanceof IntList);
+        assertTrue(evaluateExpression("[true, false]") instanceof BooleanList);
+        assertFalse(evaluateExpression("[1, null]") instanceof IntList);
+        assertEquals("[1, 2, 3]\n1\n2\n3\ntrue\nfalse\n", executeProgram("var xs = [1, 2, 3]\n" +
+                "print(xs)\n" +
+                "for(x in xs) { print(x) }\n" +
+                "for(b in [true, false]) { print(b) }"));
+    }
+
     @Test
     void functionDeclarationWorksProperly() {
         assertEquals("1\n2\n3\n", executeProgram("function foo(x) { print(x) }\n" +
@@ -83,6 +108,49 @@ public class CatscriptStatementExecutionTest extends CatscriptTestBase {
         ));
     }
 
+    @Test
+    void recursiveFunctionKeepsItsOwnLocals() {
+        assertEquals("120\n", executeProgram(
+                "function fact(n : int) : int {\n" +
+                        "  if (n <= 1) { return 1 }\n" +
+                        "  return fact(n - 1) * n\n" +
+                "}\n" +
+                "print(fact(5))"
+        ));
+    }
+
+    @Test
+    void returnFromNestedBlocksStopsTheFunction() {
+        assertEquals("2\n0\n", executeProgram(
+                "function first(l : list<int>) : int {\n" +
+                        "  for (x in l) {\n" +
+                        "    if (x > 1) { return x }\n" +
+                        "  }\n" +
+                        "  return 0\n" +
+                "}\n" +
+                "print(first([1, 2, 3]))\n" +
+                "print(first([1]))"
+        ));
+        assertEquals("1\n", executeProgram(
+                "function foo() {\n" +
+                        "  print(1)\n" +
+                        "  if (true) { return }\n" +
+                        "  print(2)\n" +
+                "}\n" +
+                "foo()"
+        ));
+    }
+
+    @Test
+    void siblingBlocksReuseSlots() {
+        assertEquals("1\n2\nfoo\n", executeProgram(
+                "var x = 1\n" +
+                "if (true) { var y = x\n print(y) }\n" +
+                "for (i in [2]) { var z = i\n print(z) }\n" +
+                "if (true) { var w = \"foo\"\n print(w) }"
+        ));
+    }
+
     @Test
     void returnStatementWorks() {
         assertEquals("10\n", executeProgram(
@@ -94,4 +162,63 @@ public class CatscriptStatementExecutionTest extends CatscriptTestBase {
     }
 
 
+    @Test
+    void streamedProgramsExecute() {
+        CatScriptProgram program = new CatScriptParser().parse(new StringReader("var x = 0\n" +
+                "for (i in [1, 2, 3]) { x = x + i }\n" +
+                "print(x)"));
+        program.verify();
+        program.execute();
+        assertEquals("6\n", program.getOutput());
+    }
+
+    @Test
+    void mappedFilesExecute(@TempDir Path dir) throws IOException {
+        Path ascii = Files.writeString(dir.resolve("ascii.cat"), "var s = \"cat\"\nprint(s)");
+        CatScriptProgram program = new CatScriptParser().parseFile(ascii);
+        program.verify();
+        program.execute();
+        assertEquals("cat\n", program.getOutput());
+
+        Path utf8 = Files.writeString(dir.resolve("utf8.cat"), "print(\"caf\u00e9\")", StandardCharsets.UTF_8);
+        program = new CatScriptParser().parseFile(utf8);
+        program.verify();
+        program.execute();
+        assertEquals("caf\u00e9\n", program.getOutput());
+    }
+
+    @Test
+    void constantsAreFoldedBeforeExecution() {
+        CatScriptProgram program = new CatScriptParser().parse("print(1 + 2 * (3 - 1))\n" +
+                "if (1 > 2) { print(\"dead\") } else { print(\"a\" + 1) }\n" +
+                "print(1 == 1)");
+        program.verify();
+        program.execute();
+        assertEquals("5\na1\ntrue\n", program.getOutput());
+
+        // folded expressions are marked, the tree is left as it was verified
+        PrintStatement print = (PrintStatement) program.getStatements().get(0);
+        assertTrue(print.getExpression() instanceof AdditiveExpression);
+        assertTrue(print.getExpression().isConstant());
+        assertEquals(5, print.getExpression().evaluate(null));
+        IfStatement ifStatement = (IfStatement) program.getStatements().get(1);
+        assertTrue(ifStatement.getExpression().isConstant());
+        assertEquals(1, ifStatement.getTrueStatements().size());
+        assertEquals(1, ifStatement.getElseStatements().size());
+    }
+
+    @Test
+    void foldingLeavesRuntimeErrorsAndCanBeTurnedOff() {
+        CatScriptProgram program = new CatScriptParser().parse("print(1 / 0)");
+        program.verify();
+        assertThrows(ArithmeticException.class, program::execute);
+
+        program = new CatScriptParser().parse("print(1 + 2)");
+        program.verify();
+        program.setOptimize(false);
+        program.execute();
+        assertEquals("3\n", program.getOutput());
+        assertFalse(((PrintStatement) program.getStatements().get(0)).getExpression().isConstant());
+    }
+
 }
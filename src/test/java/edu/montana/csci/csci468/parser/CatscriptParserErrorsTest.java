@@ -1,11 +1,14 @@
 package edu.montana.csci.csci468.parser;
 
 import edu.montana.csci.csci468.CatscriptTestBase;
+import edu.montana.csci.csci468.parser.statements.CatScriptProgram;
 import org.junit.jupiter.api.Test;
 
+import java.io.StringReader;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.fail;
 
 public class CatscriptParserErrorsTest extends CatscriptTestBase {
@@ -16,6 +19,16 @@ public class CatscriptParserErrorsTest extends CatscriptTestBase {
         assertError(errors, 0, ErrorType.UNKNOWN_NAME, 1, 0);
     }
 
+    @Test
+    public void streamedProgramsLocateErrorsAfterTheirTokensAreDropped() {
+        // the call's name leaves the streaming token buffer long before the call is verified
+        String src = "print(1)\n  foo(" + "1 + ".repeat(5000) + "1)";
+        CatScriptProgram program = new CatScriptParser().parse(new StringReader(src));
+        List<ParseError> errors = assertThrows(ParseErrorException.class, program::verify).getErrors();
+        assertError(errors, 0, ErrorType.UNKNOWN_NAME, 2, 2);
+        assertEquals("foo", errors.get(0).getLocation().getStringValue());
+    }
+
     private void assertError(List<ParseError> errors, int errorIndex, ErrorType errorType) {
         assertError(errors, errorIndex, errorType, -1, -1);
     }
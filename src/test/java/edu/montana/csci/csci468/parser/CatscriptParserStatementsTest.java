@@ -3,8 +3,12 @@ package edu.montana.csci.csci468.parser;
 import edu.montana.csci.csci468.CatscriptTestBase;
 import edu.montana.csci.csci468.parser.expressions.*;
 import edu.montana.csci.csci468.parser.statements.*;
+import edu.montana.csci.csci468.tokenizer.Token;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 public class CatscriptParserStatementsTest extends CatscriptTestBase {
@@ -194,4 +198,133 @@ public class CatscriptParserStatementsTest extends CatscriptTestBase {
         assertTrue(returnStmt.getExpression() instanceof IntegerLiteralExpression);
     }
 
+    @Test
+    public void programsAndExpressionsAreToldApartUpFront() {
+        CatScriptParser parser = new CatScriptParser();
+        assertTrue(parser.parse("1 + 2").getExpression() instanceof AdditiveExpression);
+        assertTrue(parser.parse("foo(1)").getExpression() instanceof FunctionCallExpression);
+
+        CatScriptProgram program = parser.parse("foo(1)\nprint(2)");
+        assertNull(program.getExpression());
+        assertTrue(program.getStatements().get(0) instanceof FunctionCallStatement);
+        assertTrue(program.getStatements().get(1) instanceof PrintStatement);
+
+        program = parser.parse("x = 1");
+        assertNull(program.getExpression());
+        assertTrue(program.getStatements().get(0) instanceof AssignmentStatement);
+    }
+
+    @Test
+    public void reparseKeepsStatementsOutsideTheEdit() {
+        String src = "var x = 1\n" +
+                "function f(a : int) : int { return a + x }\n" +
+                "print(f(2))\n" +
+                "var y = \"after\"\n" +
+                "print(y)";
+        CatScriptParser parser = new CatScriptParser();
+        CatScriptProgram previous = parser.parse(src);
+        previous.verify();
+        List<Statement> before = new ArrayList<>(previous.getStatements());
+
+        int offset = src.indexOf("a + x") + 4;
+        CatScriptProgram program = parser.reparse(previous, offset, 1, "x * 10");
+        String edited = src.substring(0, offset) + "x * 10" + src.substring(offset + 1);
+
+        assertSame(before.get(0), program.getStatements().get(0));
+        assertNotSame(before.get(1), program.getStatements().get(1));
+        assertSame(before.get(3), program.getStatements().get(3));
+        assertSame(before.get(4), program.getStatements().get(4));
+        assertEquals(describe(new CatScriptParser().parse(edited)), describe(program));
+        assertEquals("after", ((VariableStatement) program.getStatements().get(3)).getStart().getLineContent().substring(9, 14));
+
+        program.verify();
+        program.execute();
+        assertEquals("12\nafter\n", program.getOutput());
+    }
+
+    @Test
+    public void reparseMatchesAFullParse() {
+        String src = "var x = 1\nif (x > 0) { print(x) }\nprint(x + 1)\nfunction f() { print(\"f\") }\nf()\n";
+        String[][] edits = {{"0", "0", "// comment\n"}, {"10", "2", "for"}, {"20", "0", "}\n"},
+                {"33", "0", "\n\n"}, {"36", "0", "* 2"}, {"77", "0", "print(1)"}, {"9", "30", ""}};
+        for (String[] edit : edits) {
+            int offset = Integer.parseInt(edit[0]);
+            int removed = Integer.parseInt(edit[1]);
+            String edited = src.substring(0, offset) + edit[2] + src.substring(offset + removed);
+            CatScriptProgram program = new CatScriptParser().reparse(new CatScriptParser().parse(src), offset, removed, edit[2]);
+            assertEquals(describe(new CatScriptParser().parse(edited)), describe(program), edited);
+        }
+    }
+
+    @Test
+    public void reparseAfterExecuteStillVerifiesFoldedBranches() {
+        CatScriptParser parser = new CatScriptParser();
+        CatScriptProgram previous = parser.parse("var x = 1\nif (false) { print(x) }\nprint(2)");
+        previous.verify();
+        previous.execute();
+
+        CatScriptProgram program = parser.reparse(previous, 4, 1, "y");
+        ParseErrorException exception = assertThrows(ParseErrorException.class, program::verify);
+        assertEquals(ErrorType.UNKNOWN_NAME, exception.getErrors().get(0).getErrorType());
+    }
+
+    @Test
+    public void reparseClearsWhatThePreviousRunLeft() {
+        String src = "function f(n : int) { print(n) }\nf(1)\nf(2)\nprint(1 + 2)";
+        CatScriptParser parser = new CatScriptParser();
+        CatScriptProgram previous = parser.parse(src);
+        previous.verify();
+        previous.setCompileThreshold(1);
+        previous.execute();
+        FunctionDefinitionStatement f = previous.getFunction("f");
+        PrintStatement print = (PrintStatement) previous.getStatements().get(3);
+        assertTrue(f.isCompiled());
+        assertTrue(print.getExpression().isConstant());
+
+        CatScriptProgram program = parser.reparse(previous, src.indexOf("f(2)") + 2, 1, "3");
+        assertSame(f, program.getStatements().get(0));
+        assertSame(print, program.getStatements().get(3));
+        assertFalse(f.isCompiled());
+        assertFalse(print.getExpression().isConstant());
+
+        program.verify();
+        program.setOptimize(false);
+        program.execute();
+        assertEquals("1\n3\n3\n", program.getOutput());
+        assertFalse(print.getExpression().isConstant());
+    }
+
+    @Test
+    public void reparseChainsEdits() {
+        // every reparse edits the last one's source, piece by piece
+        String src = "var x = 1\nif (x > 0) { print(x) }\nprint(x + 1)\nfunction f() { print(\"f\") }\nf()\n";
+        String[][] edits = {{"0", "0", "// comment\n"}, {"21", "2", "for"}, {"32", "0", "}\n"},
+                {"46", "0", "\n\n"}, {"49", "0", "* 2"}, {"94", "0", "print(1)"}, {"20", "30", ""},
+                {"0", "11", ""}, {"5", "0", "y\nvar "}};
+        CatScriptProgram program = new CatScriptParser().parse(src);
+        for (String[] edit : edits) {
+            int offset = Integer.parseInt(edit[0]);
+            int removed = Integer.parseInt(edit[1]);
+            src = src.substring(0, offset) + edit[2] + src.substring(offset + removed);
+            program = new CatScriptParser().reparse(program, offset, removed, edit[2]);
+            assertEquals(describe(new CatScriptParser().parse(src)), describe(program), src);
+        }
+    }
+
+    private String describe(ParseElement element) {
+        StringBuilder sb = new StringBuilder(element.toString());
+        if (element.getStart() != null) {
+            Token start = element.getStart();
+            sb.append("@").append(start.getStart()).append(":").append(start.getLine()).append(":").append(start.getLineOffset());
+            sb.append("[").append(start.getLineContent()).append("]");
+        }
+        for (ParseError error : element.getErrors()) {
+            sb.append(" ").append(error.getFullMessage());
+        }
+        for (ParseElement child : element.getChildren()) {
+            sb.append(" (").append(describe(child)).append(")");
+        }
+        return sb.toString();
+    }
+
 }
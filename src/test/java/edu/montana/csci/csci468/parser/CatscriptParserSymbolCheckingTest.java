@@ -1,11 +1,15 @@
 package edu.montana.csci.csci468.parser;
 
 import edu.montana.csci.csci468.CatscriptTestBase;
+import edu.montana.csci.csci468.parser.statements.CatScriptProgram;
 import edu.montana.csci.csci468.parser.statements.PrintStatement;
 import edu.montana.csci.csci468.parser.statements.Statement;
 import edu.montana.csci.csci468.parser.statements.VariableStatement;
 import org.junit.jupiter.api.Test;
 
+import java.util.List;
+import java.util.stream.Collectors;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 
@@ -41,6 +45,12 @@ public class CatscriptParserSymbolCheckingTest extends CatscriptTestBase {
                 "for(x in []){ print(x) }"));
     }
 
+    @Test
+    void unknownFunctionErrors() {
+        assertEquals(ErrorType.UNKNOWN_NAME, getParseError("foo(1)"));
+        assertEquals(ErrorType.UNKNOWN_NAME, getParseError("print(foo(1))"));
+    }
+
     @Test
     void paramsConflictWithGlobalVars() {
         assertEquals(ErrorType.DUPLICATE_NAME, getParseError("var x = 10\n" +
@@ -60,4 +70,46 @@ public class CatscriptParserSymbolCheckingTest extends CatscriptTestBase {
         assertNotNull(statement);
     }
 
+    @Test
+    void parallelVerifyReportsTheSameErrorsInOrder() {
+        StringBuilder src = new StringBuilder("var before = 1\n");
+        for (int i = 0; i < 50; i++) {
+            src.append("function f").append(i).append("(a : int) : int { print(before) print(after) return a + 1 }\n");
+            src.append("function g").append(i).append("() { var s : string = ").append(i).append(" }\n");
+        }
+        src.append("var after = 2\n");
+
+        List<ParseError> sequential = verifyErrors(src.toString(), false);
+        List<ParseError> parallel = verifyErrors(src.toString(), true);
+        assertEquals(100, parallel.size());
+        assertEquals(ErrorType.UNKNOWN_NAME, parallel.get(0).getErrorType());
+        assertEquals(ErrorType.INCOMPATIBLE_TYPES, parallel.get(1).getErrorType());
+        assertEquals(sequential.stream().map(ParseError::getFullMessage).collect(Collectors.toList()),
+                parallel.stream().map(ParseError::getFullMessage).collect(Collectors.toList()));
+    }
+
+    @Test
+    void parallelVerifiedProgramsExecute() {
+        CatScriptProgram program = new CatScriptParser().parse("var x = 2\n" +
+                "function twice(a : int) : int { var b = a * x return b }\n" +
+                "print(twice(21))");
+        program.verifyInParallel();
+        program.execute();
+        assertEquals("42\n", program.getOutput());
+    }
+
+    private List<ParseError> verifyErrors(String src, boolean parallel) {
+        CatScriptProgram program = new CatScriptParser().parse(src);
+        try {
+            if (parallel) {
+                program.verifyInParallel();
+            } else {
+                program.verify();
+            }
+            return List.of();
+        } catch (ParseErrorException e) {
+            return e.getErrors();
+        }
+    }
+
 }
@@ -78,4 +78,15 @@ public class CatscriptParserTypeCheckingTest extends CatscriptTestBase {
     }
 
 
+    @Test
+    public void listTypesAreCanonical() {
+        CatscriptType nested = CatscriptType.getListType(CatscriptType.getListType(CatscriptType.INT));
+        assertSame(nested, CatscriptType.getListType(CatscriptType.getListType(CatscriptType.INT)));
+        assertEquals("list<list<int>>", nested.toString());
+
+        VariableStatement var = parseStatement("var x : list<list<int>> = [[1]]");
+        assertSame(nested, var.getType());
+        assertSame(nested, var.getExpression().getType());
+    }
+
 }
@@ -3,7 +3,13 @@ package edu.montana.csci.csci468.tokenizer;
 import edu.montana.csci.csci468.CatscriptTestBase;
 import org.junit.jupiter.api.Test;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.stream.Collectors;
 
 import static edu.montana.csci.csci468.tokenizer.TokenType.*;
 import static org.junit.jupiter.api.Assertions.*;
@@ -54,6 +60,19 @@ public class CatScriptTokenizerTest extends CatscriptTestBase {
         assertTokensAre("\"asdf\\", ERROR, EOF);
     }
 
+    @Test
+    public void packedTokenValuesComeFromTheSource(){
+        TokenList tokens = getTokenList("foo \"bar\" 12 $");
+        assertEquals(5, tokens.size());
+        assertEquals(STRING, tokens.getType(1));
+        assertEquals("foo", tokens.get(0).getStringValue());
+        assertEquals("bar", tokens.get(1).getStringValue());
+        assertEquals("12", tokens.get(2).getStringValue());
+        assertEquals("<Unexpected Token: [$]>", tokens.get(3).getStringValue());
+        assertEquals("<EOF>", tokens.get(4).getStringValue());
+        assertThrows(IndexOutOfBoundsException.class, () -> tokens.get(5));
+    }
+
     @Test
     public void basicIdentifiers(){
         assertTokensAre("asdf", IDENTIFIER, EOF);
@@ -140,6 +159,67 @@ public class CatScriptTokenizerTest extends CatscriptTestBase {
         assertEquals(14, tokenList.get(2).getEnd());
     }
 
+    @Test
+    public void streamingTokensMatchStringTokens(){
+        String src = "var x = [1, 2]\n" +
+                "// a comment\n" +
+                "print(\"" + "s".repeat(10_000) + "\" + x) != $";
+        // a reader handing out a few characters at a time, so tokens straddle reads
+        Reader trickle = new StringReader(src) {
+            @Override
+            public int read(char[] cbuf, int off, int len) throws IOException {
+                return super.read(cbuf, off, Math.min(len, 3));
+            }
+        };
+        List<Token> expected = getTokensAsList(src);
+        List<Token> streamed = new CatScriptTokenizer(trickle).getTokens().stream().collect(Collectors.toList());
+        assertEquals(expected.size(), streamed.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).toString(), streamed.get(i).toString());
+        }
+    }
+
+    @Test
+    public void streamingTokensAreDiscardedOnceConsumed(){
+        TokenList tokens = new CatScriptTokenizer(new StringReader("1 ".repeat(1000))).getTokens();
+        for (int i = 0; i < 500; i++) {
+            tokens.consumeToken();
+        }
+        assertEquals("1", tokens.lastToken().getStringValue());
+        assertThrows(IllegalStateException.class, () -> tokens.get(0));
+    }
+
+    @Test
+    public void streamingLineIndexOnlyCoversBufferedTokens(){
+        CatScriptTokenizer tokenizer = new CatScriptTokenizer(new StringReader("1\n".repeat(100_000)));
+        TokenList tokens = tokenizer.getTokens();
+        for (int i = 1; i <= 100_000; i++) {
+            tokens.consumeToken();
+            assertEquals(i, tokens.lastToken().getLine());
+        }
+        assertTrue(tokenizer.indexedLineCount() < 1000);
+    }
+
+    @Test
+    public void byteBufferTokensMatchStringTokens(){
+        String src = "function f(x : int) { print(\"x\" + x) }\nf(12)";
+        List<Token> expected = getTokensAsList(src);
+        ByteBuffer bytes = ByteBuffer.wrap(src.getBytes(StandardCharsets.US_ASCII));
+        List<Token> mapped = new CatScriptTokenizer(bytes).getTokens().stream().collect(Collectors.toList());
+        assertEquals(expected.toString(), mapped.toString());
+    }
+
+    @Test
+    public void lineContentComesFromTheLineIndex(){
+        List<Token> tokens = getTokensAsList("var x = 1\n\n  print(x)\n");
+        assertEquals("var x = 1", tokens.get(0).getLineContent());
+        assertEquals(3, tokens.get(4).getLine());
+        assertEquals(2, tokens.get(4).getLineOffset());
+        assertEquals("  print(x)", tokens.get(4).getLineContent());
+        assertEquals("", tokens.get(tokens.size() - 1).getLineContent());
+        assertNull(new CatScriptTokenizer(new StringReader("1")).getTokens().get(0).getLineContent());
+    }
+
     @Test
     public void varStatement(){
         assertTokensAre("var x = 10",